@@ -5,11 +5,15 @@ import com.articulate.nlp.lucene.SearchResult;
 import com.articulate.sigma.KBmanager;
 import com.articulate.sigma.StringUtil;
 import com.articulate.sigma.WordNetUtilities;
+import edu.emory.clir.clearnlp.dependency.DEPTree;
+import edu.stanford.nlp.util.CoreMap;
 import nlp.features.QCFeaturizationPipeline;
 import nlp.learning.PassiveAggressiveClassifier;
+import nlp.qa.QuestionFociExtractor;
 import nlp.qa.ShortAnswerExtractor;
 import nlp.scripts.Demo;
 import nlp.scripts.IndexDocuments;
+import nlp.semantics.ParseCache;
 import nlp.semantics.SemanticParser;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
@@ -32,6 +36,8 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
 Read data from http://www.cs.cmu.edu/~ark/QA-data/
@@ -52,6 +58,9 @@ public class CMUQA {
     //private static String indexDir = saPath + File.separator + "index"; // args[0];
     private static String modelsPath = saPath + File.separator + "models"; // args[1];
     private static String classifierModel = "question-classifier.pa770.ser" ; // args[2];
+
+    // the tokens of the parses kept by each parse cache, as the same sentences come back as answers
+    private static long parsedTokens = 2000000;
     private static String questionsFilePath = corporaPath +
             "/Question_Answer_Dataset_v1.2/question_answer_pairs-combined.txt";
 
@@ -94,6 +103,18 @@ public class CMUQA {
         }
     }
 
+    /****************************************************************
+     * @return the question of the @param entry, made fit for a lucene query
+     */
+    private static String question(HashMap<headers,String> entry) {
+
+        String question = entry.get(headers.QUESTION);
+        question = question.replace("\"","\\\""); //lucene appears confused by quotes in a query
+        question = question.replace("?",".");
+        question = question.replace("/","\\/");
+        return StringUtil.replaceNonAsciiChars(question);
+    }
+
     /****************************************************************
      */
     private static ArrayList<SearchResult> runTest() {
@@ -108,14 +129,18 @@ public class CMUQA {
             IndexReader reader = DirectoryReader.open(dir);
             PassiveAggressiveClassifier classifier = PassiveAggressiveClassifier.load(Paths.get(modelsPath, classifierModel));
             QCFeaturizationPipeline featurizer = new QCFeaturizationPipeline(modelsPath);
-            ShortAnswerExtractor extractor = new ShortAnswerExtractor(new SemanticParser(), classifier, featurizer);
+            ParseCache<CoreMap> annotations = QuestionFociExtractor.cache(parsedTokens);
+            ParseCache<DEPTree> parses = SemanticParser.cache(parsedTokens);
+            featurizer.extractor.cached(annotations);
+            ShortAnswerExtractor extractor = new ShortAnswerExtractor(new SemanticParser().cached(parses), classifier, featurizer);
+
+            // the questions are annotated together on all the cores first, into the parse cache
+            List<String> questions = corpus.stream().map(CMUQA::question).
+                    filter(q -> !StringUtil.emptyString(q)).collect(Collectors.toList());
+            featurizer.extractor.annotateSentences(questions, Runtime.getRuntime().availableProcessors(), s -> { });
 
             for (HashMap<headers,String> entry : corpus) {
-                currentQuestion = entry.get(headers.QUESTION);
-                currentQuestion = currentQuestion.replace("\"","\\\""); //lucene appears confused by quotes in a query
-                currentQuestion = currentQuestion.replace("?",".");
-                currentQuestion = currentQuestion.replace("/","\\/");
-                currentQuestion = StringUtil.replaceNonAsciiChars(currentQuestion);
+                currentQuestion = question(entry);
                 String desiredAnswer = entry.get(headers.ANSWER);
                 if (!StringUtil.emptyString(currentQuestion)) {
                     System.out.println("**************************************************");
@@ -160,6 +185,8 @@ public class CMUQA {
                     }
                 }
             }
+            System.out.println("CoreNLP parse cache: " + annotations);
+            System.out.println("ClearNLP parse cache: " + parses);
         }
         catch (Exception ex) {
             System.out.println("Failed on a question: " + currentQuestion);
@@ -0,0 +1,378 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.data;
+
+import edu.stanford.nlp.util.Pair;
+import nlp.features.FeatureDictionary;
+import nlp.features.IndexedFeatureVector;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A dataset of indexed data points in the compressed sparse row layout: the features of
+ * all the data points are in two arrays (ids and values), the features of the i-th row
+ * being between offsets[i] and offsets[i + 1], and the labels of the rows are in another one.
+ *
+ * Shuffling and splitting do not copy the data but create views with their own order of the
+ * rows, which share the arrays.
+ */
+public class CsrDataSet {
+
+    public final Labels labels;
+
+    public final FeatureDictionary features;
+
+    private final int[] offsets;
+
+    private final int[] ids;
+
+    private final float[] values;
+
+    private final int[] labelIds;
+
+    // the rows of this view, in order
+    private final int[] rows;
+
+    /****************************************************************
+     * @return a view of the @param rows of the data
+     */
+    private CsrDataSet(CsrDataSet data, int[] rows) {
+
+        this(data, data.labels, data.labelIds, rows);
+    }
+
+    /****************************************************************
+     * @return a view of the @param rows of the data, labeled by @param labelIds of @param labels
+     */
+    private CsrDataSet(CsrDataSet data, Labels labels, int[] labelIds, int[] rows) {
+
+        this.labels = labels;
+        this.features = data.features;
+        this.offsets = data.offsets;
+        this.ids = data.ids;
+        this.values = data.values;
+        this.labelIds = labelIds;
+        this.rows = rows;
+    }
+
+    /****************************************************************
+     * @return a dataset with all the rows of the arrays
+     */
+    private CsrDataSet(Labels labels, FeatureDictionary features, int[] offsets, int[] ids, float[] values, int[] labelIds) {
+
+        this.labels = labels;
+        this.features = features;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.values = values;
+        this.labelIds = labelIds;
+        this.rows = new int[labelIds.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+    }
+
+    /****************************************************************
+     * @return The data points of @param dataSet, with the features indexed by @param features,
+     *         in the compressed layout. A data point without features is an empty row.
+     */
+    public static CsrDataSet of(DataSet dataSet, FeatureDictionary features) {
+
+        List<Pair<Integer, IndexedFeatureVector>> dataPoints = dataSet.indexed(features);
+
+        int size = 0;
+        for (Pair<Integer, IndexedFeatureVector> d : dataPoints) {
+            size += d.second == null ? 0 : d.second.size();
+        }
+
+        int[] offsets = new int[dataPoints.size() + 1];
+        int[] ids = new int[size];
+        float[] values = new float[size];
+        int[] labelIds = new int[dataPoints.size()];
+
+        int[] k = {0};
+        for (int i = 0; i < dataPoints.size(); i++) {
+            Pair<Integer, IndexedFeatureVector> d = dataPoints.get(i);
+            labelIds[i] = d.first;
+            offsets[i] = k[0];
+            if (d.second != null) {
+                d.second.forEach((id, value) -> {
+                    ids[k[0]] = id;
+                    values[k[0]++] = (float) value;
+                });
+            }
+        }
+        offsets[dataPoints.size()] = size;
+
+        return new CsrDataSet(dataSet.labels, features, offsets, ids, values, labelIds);
+    }
+
+    /****************************************************************
+     * @return The number of data points
+     */
+    public int size() {
+
+        return rows.length;
+    }
+
+    /****************************************************************
+     * @return The label index of the i-th data point
+     */
+    public int label(int i) {
+
+        return labelIds[rows[i]];
+    }
+
+    /****************************************************************
+     * @return The position of the first feature of the i-th data point
+     */
+    public int start(int i) {
+
+        return offsets[rows[i]];
+    }
+
+    /****************************************************************
+     * @return The position after the last feature of the i-th data point
+     */
+    public int end(int i) {
+
+        return offsets[rows[i] + 1];
+    }
+
+    /****************************************************************
+     * @return The id of the feature at position @param k
+     */
+    public int id(int k) {
+
+        return ids[k];
+    }
+
+    /****************************************************************
+     * @return The value of the feature at position @param k
+     */
+    public float value(int k) {
+
+        return values[k];
+    }
+
+    /****************************************************************
+     * @return The features of the i-th data point as a vector
+     */
+    public IndexedFeatureVector vector(int i) {
+
+        IndexedFeatureVector vector = new IndexedFeatureVector(end(i) - start(i));
+        for (int k = start(i); k < end(i); k++) {
+            vector.add(ids[k], values[k]);
+        }
+        return vector;
+    }
+
+    /****************************************************************
+     * @return A view of the data points shuffled by @param random, in the same
+     *         order as Collections.shuffle would shuffle a list of them
+     */
+    public CsrDataSet shuffle(Random random) {
+
+        int[] shuffled = rows.clone();
+        for (int i = shuffled.length; i > 1; i--) {
+            int j = random.nextInt(i);
+            int temp = shuffled[i - 1];
+            shuffled[i - 1] = shuffled[j];
+            shuffled[j] = temp;
+        }
+        return new CsrDataSet(this, shuffled);
+    }
+
+    /****************************************************************
+     * @return A view of the data points from @param from up to @param to
+     */
+    public CsrDataSet subset(int from, int to) {
+
+        int[] subset = new int[to - from];
+        System.arraycopy(rows, from, subset, 0, subset.length);
+        return new CsrDataSet(this, subset);
+    }
+
+    /****************************************************************
+     * @return A view of the data points whose label is mapped by @param labelMap (indexed by
+     *         the current label indices) to an index of @param labels, with that label. The data
+     *         points with labels mapped to -1 are left out.
+     */
+    public CsrDataSet relabel(Labels labels, int[] labelMap) {
+
+        int[] relabeled = new int[labelIds.length];
+        int size = 0;
+        for (int i = 0; i < rows.length; i++) {
+            int label = labelMap[labelIds[rows[i]]];
+            relabeled[rows[i]] = label;
+            if (label >= 0)
+                size++;
+        }
+
+        int[] kept = new int[size];
+        int k = 0;
+        for (int row : rows) {
+            if (relabeled[row] >= 0)
+                kept[k++] = row;
+        }
+        return new CsrDataSet(this, labels, relabeled, kept);
+    }
+
+    /****************************************************************
+     * @return A dataset with the data points of @param first followed by the ones of @param second,
+     *         which have the same labels and features, copied into new arrays
+     */
+    public static CsrDataSet concat(CsrDataSet first, CsrDataSet second) {
+
+        int size = 0;
+        for (CsrDataSet data : Arrays.asList(first, second)) {
+            for (int i = 0; i < data.size(); i++) {
+                size += data.end(i) - data.start(i);
+            }
+        }
+
+        int rows = first.size() + second.size();
+        int[] offsets = new int[rows + 1];
+        int[] ids = new int[size];
+        float[] values = new float[size];
+        int[] labelIds = new int[rows];
+
+        int row = 0;
+        int k = 0;
+        for (CsrDataSet data : Arrays.asList(first, second)) {
+            for (int i = 0; i < data.size(); i++) {
+                labelIds[row] = data.label(i);
+                offsets[row++] = k;
+                int length = data.end(i) - data.start(i);
+                System.arraycopy(data.ids, data.start(i), ids, k, length);
+                System.arraycopy(data.values, data.start(i), values, k, length);
+                k += length;
+            }
+        }
+        offsets[rows] = size;
+
+        return new CsrDataSet(first.labels, first.features, offsets, ids, values, labelIds);
+    }
+
+    /****************************************************************
+     * @return Returns a pair of views as a result of splitting the dataset into two,
+     *         with the amounts of datapoints in each defined by the @part parameter.
+     *         The data points are shuffled first as by DataSet.split, so the parts are the same.
+     */
+    public Pair<CsrDataSet, CsrDataSet> split(double part) {
+
+        CsrDataSet shuffled = shuffle(new Random(0));
+        int lastIndex = (int) (size() * part);
+        return new Pair<>(shuffled.subset(0, lastIndex), shuffled.subset(lastIndex, size()));
+    }
+
+    /****************************************************************
+     * @return The @param i-th of @param k folds for cross validation: a pair of views of the data
+     *         points out of the fold, to train on, and of the ones in it, to test on. The data points
+     *         are shuffled first the same way for all the folds, so the k folds are disjoint.
+     */
+    public Pair<CsrDataSet, CsrDataSet> fold(int k, int i) {
+
+        CsrDataSet shuffled = shuffle(new Random(0));
+        int from = i * size() / k;
+        int to = (i + 1) * size() / k;
+
+        int[] rest = new int[size() - (to - from)];
+        System.arraycopy(shuffled.rows, 0, rest, 0, from);
+        System.arraycopy(shuffled.rows, to, rest, from, size() - to);
+        return new Pair<>(new CsrDataSet(this, rest), shuffled.subset(from, to));
+    }
+
+    /****************************************************************
+     * @return The number of data points of this view each feature id occurs in
+     *         (document frequency), indexed by the feature ids
+     */
+    private int[] frequencies() {
+
+        int max = -1;
+        for (int i = 0; i < size(); i++) {
+            for (int k = start(i); k < end(i); k++) {
+                max = Math.max(max, ids[k]);
+            }
+        }
+
+        int[] frequencies = new int[max + 1];
+        for (int i = 0; i < size(); i++) {
+            for (int k = start(i); k < end(i); k++) {
+                frequencies[ids[k]]++;
+            }
+        }
+        return frequencies;
+    }
+
+    /****************************************************************
+     * @return The number of distinct features the data points of this view have
+     */
+    public int distinctFeatures() {
+
+        int count = 0;
+        for (int f : frequencies()) {
+            if (f > 0)
+                count++;
+        }
+        return count;
+    }
+
+    /****************************************************************
+     * @return The data points of this view, in the same order, only with the features
+     *         which occur in at least @param minFrequency of them. The rare features are
+     *         mostly noise, and a model trained without them has fewer weights.
+     *         The dictionary is shared, the ids stay the same.
+     */
+    public CsrDataSet select(int minFrequency) {
+
+        int[] frequencies = frequencies();
+
+        int size = 0;
+        for (int i = 0; i < size(); i++) {
+            for (int k = start(i); k < end(i); k++) {
+                if (frequencies[ids[k]] >= minFrequency)
+                    size++;
+            }
+        }
+
+        int[] selectedOffsets = new int[size() + 1];
+        int[] selectedIds = new int[size];
+        float[] selectedValues = new float[size];
+        int[] selectedLabels = new int[size()];
+
+        int s = 0;
+        for (int i = 0; i < size(); i++) {
+            selectedLabels[i] = label(i);
+            selectedOffsets[i] = s;
+            for (int k = start(i); k < end(i); k++) {
+                if (frequencies[ids[k]] >= minFrequency) {
+                    selectedIds[s] = ids[k];
+                    selectedValues[s++] = values[k];
+                }
+            }
+        }
+        selectedOffsets[size()] = size;
+
+        return new CsrDataSet(labels, features, selectedOffsets, selectedIds, selectedValues, selectedLabels);
+    }
+
+    /****************************************************************
+     * @return The number of bytes taken by the arrays of this view
+     */
+    public long memorySize() {
+
+        return (long) (offsets.length + ids.length + labelIds.length + rows.length) * Integer.BYTES +
+                (long) values.length * Float.BYTES;
+    }
+}
@@ -11,6 +11,8 @@
 package nlp.data;
 
 import edu.stanford.nlp.util.Pair;
+import nlp.features.FeatureDictionary;
+import nlp.features.IndexedFeatureVector;
 import nlp.features.SparseFeatureVector;
 
 import java.util.ArrayList;
@@ -29,6 +31,39 @@ public class DataSet {
 
     public List<Pair<Integer, SparseFeatureVector>> dataPoints = new ArrayList<>();
 
+    // the data points with indexed features, and the dictionary of their ids
+    public List<Pair<Integer, IndexedFeatureVector>> indexedDataPoints = new ArrayList<>();
+
+    public FeatureDictionary features;
+
+    /****************************************************************
+     * @return The number of data points, in whichever of their forms the dataset holds
+     */
+    public int size() {
+
+        if (!rawDataPoints.isEmpty())
+            return rawDataPoints.size();
+        return indexedDataPoints.isEmpty() ? dataPoints.size() : indexedDataPoints.size();
+    }
+
+    /****************************************************************
+     * @return The data points with features indexed by @param features,
+     *         indexing the named data points only once for a dictionary
+     */
+    public List<Pair<Integer, IndexedFeatureVector>> indexed(FeatureDictionary features) {
+
+        if (this.features == features)
+            return indexedDataPoints;
+
+        if (dataPoints.isEmpty() && !indexedDataPoints.isEmpty())
+            throw new IllegalStateException("The data points were indexed with another dictionary");
+
+        indexedDataPoints = new ArrayList<>();
+        dataPoints.forEach(d -> indexedDataPoints.add(new Pair<>(d.first, d.second.toIndexed(features))));
+        this.features = features;
+        return indexedDataPoints;
+    }
+
     /****************************************************************
      * @return Returns a pair of datasets as a result of splitting the
      *         original dataset into two, with the amounts of datapoints
@@ -40,18 +75,25 @@ public class DataSet {
         // might result in a not representative sample of the whole dataset
         Collections.shuffle(rawDataPoints, new Random(0));
         Collections.shuffle(dataPoints, new Random(0));
+        Collections.shuffle(indexedDataPoints, new Random(0));
 
         DataSet part1 = new DataSet();
         DataSet part2 = new DataSet();
 
         part1.labels = labels;
         part2.labels = labels;
+        part1.features = features;
+        part2.features = features;
 
-        int lastIndex = (int) (rawDataPoints.size() * part);
-        for (int i = 0; i < rawDataPoints.size(); i++) {
+        int lastIndex = (int) (size() * part);
+        for (int i = 0; i < size(); i++) {
             DataSet temp = i < lastIndex ? part1 : part2;
-            temp.rawDataPoints.add(rawDataPoints.get(i));
-            temp.dataPoints.add(dataPoints.get(i));
+            if (!rawDataPoints.isEmpty())
+                temp.rawDataPoints.add(rawDataPoints.get(i));
+            if (!dataPoints.isEmpty())
+                temp.dataPoints.add(dataPoints.get(i));
+            if (!indexedDataPoints.isEmpty())
+                temp.indexedDataPoints.add(indexedDataPoints.get(i));
         }
 
         return new Pair<>(part1, part2);
@@ -0,0 +1,244 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.data;
+
+import edu.stanford.nlp.util.Pair;
+import nlp.features.FeatureDictionary;
+import nlp.features.HashingFeatureDictionary;
+import nlp.features.IndexedFeatureVector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Featurized datasets kept in a binary file, so that reading them again does not need
+ * to parse and featurize all the questions.
+ *
+ * The features are kept with their own ids and names, and are mapped to the ids of the
+ * dictionary the datasets are used with. A growing one only gets the features of the training
+ * sets, in the order they were first seen as when featurizing, the others are looked up, as a
+ * model has no weights for them anyway. Hashed features are kept as they are, as their ids do
+ * not depend on a dictionary.
+ *
+ * The file is named by key(), a hash of the contents of the input files and of the featurization,
+ * so a cached file is simply not found anymore once any of those change.
+ */
+public class FeaturizedDataCache {
+
+    private static final int MAGIC = 0x51434443;
+    private static final int VERSION = 1;
+
+    // the names of the feature ids, or null for hashed features
+    private final FeatureDictionary names;
+
+    private final List<DataSet> dataSets;
+
+    /****************************************************************
+     * @return a cache of the @param dataSets, indexed with @param names
+     */
+    public FeaturizedDataCache(FeatureDictionary names, List<DataSet> dataSets) {
+
+        this.names = names instanceof HashingFeatureDictionary ? null : names;
+        this.dataSets = dataSets;
+    }
+
+    /****************************************************************
+     * @return The key of the datasets read from @param dataPaths, featurized by
+     *         the @param pipelineConfiguration into the ids of @param features
+     */
+    public static String key(List<Path> dataPaths, boolean gross, Charset charset, FeatureDictionary features,
+                             String pipelineConfiguration) throws IOException {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String configuration = String.format("%d|%s|%s|%s|%s", VERSION, gross, charset.name(),
+                    features instanceof HashingFeatureDictionary ? features.toString() : "named", pipelineConfiguration);
+            digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+
+            // the files in the order the reader reads them
+            for (Path dataPath : dataPaths) {
+                try (Stream<Path> files = Files.list(dataPath)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        digest.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+                        digest.update(Files.readAllBytes(file));
+                    }
+                }
+            }
+
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("No SHA-256 digest available", e);
+        }
+    }
+
+    /****************************************************************
+     * @return The datasets with the features mapped to the ids of @param features, to which
+     *         only the features of the first @param training datasets are added
+     */
+    public List<DataSet> dataSets(FeatureDictionary features, int training) {
+
+        int[] ids = null;
+        if (names != null) {
+            boolean[] trained = new boolean[names.size()];
+            for (DataSet dataSet : dataSets.subList(0, training)) {
+                for (Pair<Integer, IndexedFeatureVector> d : dataSet.indexedDataPoints) {
+                    if (d.second != null)
+                        d.second.forEach((k, v) -> trained[k] = true);
+                }
+            }
+
+            ids = new int[names.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = trained[i] ? features.index(names.name(i)) : features.lookup(names.name(i));
+            }
+        }
+
+        List<DataSet> result = new ArrayList<>();
+        for (DataSet dataSet : dataSets) {
+            DataSet mapped = new DataSet();
+            mapped.features = features;
+            mapped.rawDataPoints.addAll(dataSet.rawDataPoints);
+            for (Pair<Integer, IndexedFeatureVector> d : dataSet.indexedDataPoints) {
+                mapped.indexedDataPoints.add(new Pair<>(d.first, map(d.second, ids)));
+            }
+            result.add(mapped);
+        }
+        return result;
+    }
+
+    /****************************************************************
+     * @return The vector with the ids mapped by @param ids, if any
+     */
+    private static IndexedFeatureVector map(IndexedFeatureVector vector, int[] ids) {
+
+        if (vector == null || ids == null)
+            return vector;
+
+        IndexedFeatureVector mapped = new IndexedFeatureVector(vector.size());
+        vector.forEach((k, v) -> mapped.add(ids[k], v));
+        return mapped;
+    }
+
+    /****************************************************************
+     * Saves the datasets into @param path
+     */
+    public void save(Path path) throws IOException {
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(names == null ? -1 : names.size());
+            for (int i = 0; names != null && i < names.size(); i++) {
+                out.writeUTF(names.name(i));
+            }
+
+            out.writeInt(dataSets.size());
+            for (DataSet dataSet : dataSets) {
+                out.writeInt(dataSet.size());
+                for (int i = 0; i < dataSet.size(); i++) {
+                    out.writeUTF(dataSet.rawDataPoints.get(i).first);
+                    out.writeUTF(dataSet.rawDataPoints.get(i).second);
+
+                    IndexedFeatureVector vector = dataSet.indexedDataPoints.get(i).second;
+                    out.writeInt(vector == null ? -1 : vector.size());
+                    if (vector != null)
+                        write(out, vector);
+                }
+            }
+        }
+    }
+
+    /****************************************************************
+     * Writes the ids and the values of the features of @param vector
+     */
+    private static void write(DataOutputStream out, IndexedFeatureVector vector) throws IOException {
+
+        int[] ids = new int[vector.size()];
+        double[] values = new double[vector.size()];
+        int[] i = {0};
+        vector.forEach((k, v) -> {
+            ids[i[0]] = k;
+            values[i[0]++] = v;
+        });
+
+        for (int f = 0; f < ids.length; f++) {
+            out.writeInt(ids[f]);
+            out.writeDouble(values[f]);
+        }
+    }
+
+    /****************************************************************
+     * @return The datasets saved in @param path, with their labels indexed
+     *         by @param labels in the order they are read
+     */
+    public static FeaturizedDataCache load(Path path, Labels labels) throws IOException {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a featurized data file of version " + VERSION);
+
+            FeatureDictionary names = null;
+            int numNames = in.readInt();
+            if (numNames >= 0) {
+                names = new FeatureDictionary();
+                for (int i = 0; i < numNames; i++) {
+                    names.index(in.readUTF());
+                }
+            }
+
+            List<DataSet> dataSets = new ArrayList<>();
+            int numDataSets = in.readInt();
+            for (int s = 0; s < numDataSets; s++) {
+                DataSet dataSet = new DataSet();
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    String label = in.readUTF();
+                    String question = in.readUTF();
+
+                    IndexedFeatureVector vector = null;
+                    int features = in.readInt();
+                    if (features >= 0) {
+                        vector = new IndexedFeatureVector(features);
+                        for (int f = 0; f < features; f++) {
+                            vector.add(in.readInt(), in.readDouble());
+                        }
+                    }
+
+                    dataSet.rawDataPoints.add(new Pair<>(label, question));
+                    dataSet.indexedDataPoints.add(new Pair<>(labels.index(label), vector));
+                }
+                dataSets.add(dataSet);
+            }
+
+            return new FeaturizedDataCache(names, dataSets);
+        }
+    }
+}
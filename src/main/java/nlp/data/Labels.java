@@ -11,7 +11,9 @@
 package nlp.data;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.IntStream;
 
@@ -20,6 +22,9 @@ import java.util.stream.IntStream;
  */
 public class Labels implements Serializable {
 
+    // the id computed before there was an explicit one, so that the saved models still load
+    private static final long serialVersionUID = 7196974510094471172L;
+
     private Map<String, Integer> index = new HashMap<>();
 
     private Map<Integer, String> reverseIndex = new HashMap<>();
@@ -36,6 +41,43 @@ public class Labels implements Serializable {
         return x;
     }
 
+    /****************************************************************
+     * @return The index of a given label, or -1 if it is not known, without indexing it
+     */
+    public int lookup(String label) {
+
+        Integer x = index.get(label);
+        return x == null ? -1 : x;
+    }
+
+    /****************************************************************
+     * @return A copy of the labels, which can be extended without changing these ones
+     */
+    public Labels copy() {
+
+        Labels copy = new Labels();
+        copy.index.putAll(index);
+        copy.reverseIndex.putAll(reverseIndex);
+        return copy;
+    }
+
+    /****************************************************************
+     * Indexes the labels of @param other into these ones, the new ones getting the next indices.
+     * A label is named if it is named in either, as if it was indexed once more.
+     * @return The indices in these labels of the labels of @param other, by their indices there
+     */
+    public int[] extend(Labels other) {
+
+        List<String> all = other.all();
+        int[] indices = new int[all.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = index(all.get(i));
+            if (other.label(i) != null)
+                index(all.get(i));
+        }
+        return indices;
+    }
+
     /****************************************************************
      * @return All the indices of the labels as a stream
      */
@@ -52,6 +94,17 @@ public class Labels implements Serializable {
         return reverseIndex.get(index);
     }
 
+    /****************************************************************
+     * @return All the labels ordered by their indices, also the ones which were seen
+     *         only once and so are not returned by label()
+     */
+    public List<String> all() {
+
+        String[] all = new String[index.size()];
+        index.forEach((label, i) -> all[i] = label);
+        return Arrays.asList(all);
+    }
+
     /****************************************************************
      * @return The number of labels in the mapping
      */
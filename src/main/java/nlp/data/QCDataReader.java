@@ -11,12 +11,21 @@
 package nlp.data;
 
 import edu.stanford.nlp.util.Pair;
+import nlp.features.FeatureDictionary;
+import nlp.features.HashingFeatureDictionary;
 import nlp.features.QCFeaturizationPipeline;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Reads the data needed for Question Classification according to UIUC
@@ -36,9 +45,92 @@ public class QCDataReader {
      */
     public QCDataReader(Path trainPath, Path testPath, boolean gross, QCFeaturizationPipeline pipeline, String charsetName) throws IOException {
 
+        this(trainPath, testPath, gross, pipeline, null, charsetName);
+    }
+
+    /****************************************************************
+     * Creates a new instance of the reader
+     * @param features When not null, the datapoints are featurized straight into indexed
+     *                 vectors with ids from this dictionary, instead of named vectors
+     */
+    public QCDataReader(Path trainPath, Path testPath, boolean gross, QCFeaturizationPipeline pipeline,
+                        FeatureDictionary features, String charsetName) throws IOException {
+
+        this(trainPath, testPath, gross, pipeline, features, charsetName, 1);
+    }
+
+    /****************************************************************
+     * Creates a new instance of the reader, which parses the questions together on @param threads
+     * threads, see QCFeaturizationPipeline.featurize(sentences, features, threads, callback).
+     * The featurization itself stays in the order of the questions, so the labels and the feature ids
+     * are indexed as when reading on one thread.
+     */
+    public QCDataReader(Path trainPath, Path testPath, boolean gross, QCFeaturizationPipeline pipeline,
+                        FeatureDictionary features, String charsetName, int threads) throws IOException {
+
+        Charset charset = Charset.forName(charsetName);
+        this.train = read(trainPath, gross, pipeline, threads, features, charset);
+        this.test = read(testPath, gross, pipeline, threads, features, charset);
+        this.train.labels = labels;
+        this.test.labels = labels;
+    }
+
+    /****************************************************************
+     * Creates a new instance of the reader, which keeps the featurized datapoints in @param cacheDir.
+     * Only when they are not there yet, the featurization pipeline is loaded from @param modelsPath
+     * and the questions are featurized.
+     * @param trainPath May be null when only the test set is needed
+     * @param features The dictionary of the ids of the features of the datapoints
+     * @param threads The number of threads parsing the questions
+     */
+    public QCDataReader(Path trainPath, Path testPath, boolean gross, String modelsPath,
+                        FeatureDictionary features, String charsetName, Path cacheDir, int threads) throws IOException {
+
+        this(trainPath, testPath, gross, modelsPath, false, features, charsetName, cacheDir, threads);
+    }
+
+    /****************************************************************
+     * Creates a new instance of the reader as above, which featurizes the questions
+     * with the fast pipeline (see QCFeaturizationPipeline.fast) if @param fast
+     */
+    public QCDataReader(Path trainPath, Path testPath, boolean gross, String modelsPath, boolean fast,
+                        FeatureDictionary features, String charsetName, Path cacheDir, int threads) throws IOException {
+
         Charset charset = Charset.forName(charsetName);
-        this.train = read(trainPath, gross, pipeline, charset);
-        this.test = read(testPath, gross, pipeline, charset);
+        List<Path> dataPaths = trainPath == null ? Collections.singletonList(testPath) : Arrays.asList(trainPath, testPath);
+
+        String configuration = fast ? QCFeaturizationPipeline.fastConfiguration() : QCFeaturizationPipeline.configuration(modelsPath);
+        String key = FeaturizedDataCache.key(dataPaths, gross, charset, features, configuration);
+        Path cacheFile = cacheDir.resolve(key + ".qcd");
+
+        FeaturizedDataCache cache;
+        if (Files.exists(cacheFile)) {
+            cache = FeaturizedDataCache.load(cacheFile, labels);
+        }
+        else {
+            QCFeaturizationPipeline pipeline = fast ? QCFeaturizationPipeline.fast() : new QCFeaturizationPipeline(modelsPath);
+
+            // the named features are cached with their own ids
+            FeatureDictionary cachedFeatures = features instanceof HashingFeatureDictionary ? features : new FeatureDictionary();
+            List<DataSet> dataSets = new ArrayList<>();
+            for (Path dataPath : dataPaths) {
+                dataSets.add(read(dataPath, gross, pipeline, threads, cachedFeatures, charset));
+            }
+            cache = new FeaturizedDataCache(cachedFeatures, dataSets);
+
+            // written aside first, so that a concurrent reader never sees a partial file
+            Files.createDirectories(cacheDir);
+            Path temp = Files.createTempFile(cacheDir, key, ".tmp");
+            cache.save(temp);
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // the features seen only in the test set are not added to the dictionary, unless it is
+        // the only set read (e.g. new questions to train on)
+        List<DataSet> dataSets = cache.dataSets(features, 1);
+        this.train = trainPath == null ? new DataSet() : dataSets.get(0);
+        this.test = dataSets.get(dataSets.size() - 1);
+        this.train.features = features;
         this.train.labels = labels;
         this.test.labels = labels;
     }
@@ -46,10 +138,13 @@ public class QCDataReader {
     /****************************************************************
      * @return A dataset that contains all the data
      */
-    private DataSet read(Path dataPath, boolean gross, QCFeaturizationPipeline pipeline, Charset charset) throws IOException {
+    private DataSet read(Path dataPath, boolean gross, QCFeaturizationPipeline pipeline, int threads,
+                         FeatureDictionary features, Charset charset) throws IOException {
 
         DataSet dataSet = new DataSet();
+        dataSet.features = features;
 
+        List<Integer> labelIndices = new ArrayList<>();
         Files.list(dataPath).forEach(file -> {
             try {
                 Files.lines(file, charset).forEach(line -> {
@@ -61,9 +156,8 @@ public class QCDataReader {
                     }
 
                     // index the label
-                    int labelIndex = labels.index(label);
+                    labelIndices.add(labels.index(label));
                     dataSet.rawDataPoints.add(new Pair<>(label, question));
-                    dataSet.dataPoints.add(new Pair<>(labelIndex, pipeline.featurize(question)));
                 });
             }
             catch (IOException e) {
@@ -71,6 +165,14 @@ public class QCDataReader {
             }
         });
 
+        // the questions are parsed together, and featurized in their order
+        List<String> questions = dataSet.rawDataPoints.stream().map(p -> p.second).collect(Collectors.toList());
+        Iterator<Integer> labelIndex = labelIndices.iterator();
+        if (features != null)
+            pipeline.featurize(questions, features, threads, v -> dataSet.indexedDataPoints.add(new Pair<>(labelIndex.next(), v)));
+        else
+            pipeline.featurize(questions, threads, v -> dataSet.dataPoints.add(new Pair<>(labelIndex.next(), v)));
+
         return dataSet;
     }
 
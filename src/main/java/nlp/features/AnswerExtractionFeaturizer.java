@@ -15,6 +15,7 @@ import edu.emory.clir.clearnlp.util.arc.SRLArc;
 
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -58,47 +59,64 @@ public class AnswerExtractionFeaturizer {
     public SparseFeatureVector featurize(SRLArc candidate, List<SRLArc> original, String questionCategory) {
 
         SparseFeatureVector result = new SparseFeatureVector();
+        featurize(candidate, original, questionCategory, result::add);
+        return result;
+    }
+
+    /****************************************************************
+     * @return the indexed feature vector based on the candidate and supporting context
+     */
+    public IndexedFeatureVector featurize(SRLArc candidate, List<SRLArc> original, String questionCategory,
+                                          FeatureDictionary features) {
+
+        IndexedFeatureVector result = new IndexedFeatureVector();
+        featurize(candidate, original, questionCategory, name -> result.add(features.index(name)));
+        return features.fold(result);
+    }
+
+    /****************************************************************
+     * Passes the names of the features of the candidate and supporting context to @param result
+     */
+    private void featurize(SRLArc candidate, List<SRLArc> original, String questionCategory, Consumer<String> result) {
 
         // set the category of the question as a feature
-        result.add(featureName(String.format("%s_%s", CLASS, questionCategory)));
+        result.accept(featureName(String.format("%s_%s", CLASS, questionCategory)));
 
         String candidateLabel = candidate.getLabel();
 
         if (isHumanOrEntity(questionCategory)) {
 
             // semantic role
-            if (!ARGM_PAT.matcher(candidateLabel).find()) result.add(featureName(ARGM));
+            if (!ARGM_PAT.matcher(candidateLabel).find()) result.accept(featureName(ARGM));
 
             // preposition
-            if (candidate.getNode().getLabel().startsWith(PREP)) result.add(featureName(PREP));
+            if (candidate.getNode().getLabel().startsWith(PREP)) result.accept(featureName(PREP));
 
             // lowercase feature
             if (candidate.getNode().getWordForm().toLowerCase().equals(candidate.getNode().getWordForm()))
-                result.add(featureName(LOWERCASE));
+                result.accept(featureName(LOWERCASE));
         }
 
         Set<DEPNode> originalNodes = original.stream().map(a -> a.getNode()).collect(Collectors.toSet());
 
         // semantic non match
         if (!original.stream().map(a -> a.getLabel()).anyMatch(l -> l.contains(candidateLabel))) {
-            result.add(featureName(SEMANTIC_NONMATCH));
+            result.accept(featureName(SEMANTIC_NONMATCH));
         }
 
         // same word feature
         if (originalNodes.stream().map(n -> n.getWordForm()).anyMatch(w -> w.equals(candidate.getNode().getWordForm())))
-            result.add(featureName(WORD));
+            result.accept(featureName(WORD));
 
         // same lemma feature
         if (originalNodes.stream().map(n -> n.getLemma()).anyMatch(w -> w.equals(candidate.getNode().getLemma())))
-            result.add(featureName(LEMMA));
+            result.accept(featureName(LEMMA));
 
 
         // WH quantifier pos tag feature
-        if (candidate.getNode().getPOSTag().startsWith(WH)) result.add(featureName(WH));
+        if (candidate.getNode().getPOSTag().startsWith(WH)) result.accept(featureName(WH));
 
         // adverb pos tag feature
-        if (candidate.getNode().getPOSTag().startsWith(ADVERB)) result.add(featureName(ADVERB));
-
-        return result;
+        if (candidate.getNode().getPOSTag().startsWith(ADVERB)) result.accept(featureName(ADVERB));
     }
 }
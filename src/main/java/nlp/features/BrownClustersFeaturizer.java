@@ -10,6 +10,8 @@
 
 package nlp.features;
 
+import edu.stanford.nlp.ling.IndexedWord;
+
 import java.io.IOException;
 import java.nio.file.Path;
 
@@ -58,6 +60,32 @@ public class BrownClustersFeaturizer extends WordFeaturizer {
         return features;
     }
 
+    /****************************************************************
+     * @return The indexed features vector based on a word
+     */
+    @Override
+    IndexedFeatureVector featurize(String word, FeatureDictionary features) {
+
+        IndexedFeatureVector result = new IndexedFeatureVector();
+        String path = clusters.map.get(word);
+        if (path == null)
+            return result;
+
+        result.add(features.index(name, path.substring(0, Math.min(prefixSize, path.length()))));
+        return result;
+    }
+
+    /****************************************************************
+     * Emits the cluster feature of the word, if it has a cluster
+     */
+    @Override
+    public void emit(IndexedWord word, FeatureDictionary features, FeatureConsumer sink) {
+
+        String path = clusters.map.get(word.word());
+        if (path != null)
+            sink.accept(features.index(name, path.substring(0, Math.min(prefixSize, path.length()))), 1.0);
+    }
+
     /****************************************************************
      * @return the clusters loaded from a path
      */
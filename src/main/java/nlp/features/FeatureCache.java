@@ -0,0 +1,202 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.features;
+
+import edu.stanford.nlp.ling.IndexedWord;
+import nlp.util.ClockCache;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache of the features of single words, shared by the featurizers of a combining
+ * featurizer. For each featurizer, dictionary and word (as seen by the featurizer, see
+ * WordFeaturizer.key) the feature ids and values are kept in compact arrays, so a cached word
+ * is not looked up in the clusters, lists or vectors again, and no feature names are built for it.
+ *
+ * Lookups do not lock. Over the capacity, the words are evicted by the second chance clock of
+ * ClockCache, so the frequent words of a skewed traffic stay.
+ *
+ * The features of a word looked up in a frozen dictionary may miss the unknown features, such
+ * entries are recomputed once the dictionary is not frozen anymore.
+ */
+public class FeatureCache {
+
+    private final ClockCache<Key, Entry> entries;
+
+    /****************************************************************
+     * @return An empty cache of the features of at most @param capacity words
+     */
+    public FeatureCache(int capacity) {
+
+        this.entries = new ClockCache<>(capacity, 1, entry -> 1);
+    }
+
+    /****************************************************************
+     * Emits the features of the @param word by the @param featurizer into the @param sink,
+     * from the cache or computed by the featurizer and then cached
+     */
+    void emit(WordFeaturizer featurizer, IndexedWord word, FeatureDictionary features, FeatureConsumer sink) {
+
+        Key key = new Key(featurizer, features, featurizer.key(word));
+        Entry entry = entries.get(key, e -> !e.partial || features.isFrozen());
+        if (entry != null) {
+            entry.emit(sink);
+            return;
+        }
+
+        entry = new Entry();
+        featurizer.emit(word, features, entry);
+        entry.compact();
+        entry.emit(sink);
+        entries.put(key, entry);
+    }
+
+    /****************************************************************
+     * @return The number of cached words
+     */
+    public int size() {
+
+        return entries.size();
+    }
+
+    /****************************************************************
+     * @return The number of lookups found in the cache
+     */
+    public long hits() {
+
+        return entries.hits();
+    }
+
+    /****************************************************************
+     * @return The number of lookups computed by the featurizers
+     */
+    public long misses() {
+
+        return entries.misses();
+    }
+
+    /****************************************************************
+     * @return The number of entries evicted
+     */
+    public long evictions() {
+
+        return entries.evictions();
+    }
+
+    /****************************************************************
+     * @return The fraction of the lookups found in the cache
+     */
+    public double hitRate() {
+
+        return entries.hitRate();
+    }
+
+    /****************************************************************
+     * @return The statistics of the cache
+     */
+    @Override
+    public String toString() {
+
+        return String.format("%d words cached of %d, %d hits, %d misses (%.1f%% hits), %d evictions",
+                size(), entries.maxWeight(), hits(), misses(), hitRate() * 100.0, evictions());
+    }
+
+    /**
+     * A word as seen by a featurizer, with the features of a dictionary
+     */
+    private static class Key {
+
+        private final WordFeaturizer featurizer;
+
+        private final FeatureDictionary features;
+
+        private final String word;
+
+        Key(WordFeaturizer featurizer, FeatureDictionary features, String word) {
+
+            this.featurizer = featurizer;
+            this.features = features;
+            this.word = word;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return featurizer == other.featurizer && features == other.features && word.equals(other.word);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return (System.identityHashCode(featurizer) * 31 + System.identityHashCode(features)) * 31 + word.hashCode();
+        }
+    }
+
+    /**
+     * The features of a word, collected from the featurizer and then compacted
+     */
+    private static class Entry implements FeatureConsumer {
+
+        private int[] ids = new int[4];
+
+        // null when all the values are 1.0
+        private double[] values = new double[4];
+
+        private int size = 0;
+
+        // whether some features were unknown to the (frozen) dictionary
+        private boolean partial = false;
+
+        /****************************************************************
+         * Collects a feature from the featurizer
+         */
+        @Override
+        public void accept(int feature, double value) {
+
+            if (feature < 0) {
+                partial = true;
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            ids[size] = feature;
+            values[size++] = value;
+        }
+
+        /****************************************************************
+         * Trims the arrays to the collected features
+         */
+        void compact() {
+
+            ids = Arrays.copyOf(ids, size);
+            boolean ones = true;
+            for (int i = 0; i < size; i++) {
+                ones &= values[i] == 1.0;
+            }
+            values = ones ? null : Arrays.copyOf(values, size);
+        }
+
+        /****************************************************************
+         * Emits the cached features into the @param sink
+         */
+        void emit(FeatureConsumer sink) {
+
+            for (int i = 0; i < ids.length; i++) {
+                sink.accept(ids[i], values == null ? 1.0 : values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.features;
+
+/**
+ * Receives indexed features one by one, without boxing the ids or the values
+ */
+@FunctionalInterface
+public interface FeatureConsumer {
+
+    void accept(int feature, double value);
+}
@@ -0,0 +1,312 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.features;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A mapping between feature names and dense integer ids, which are used by
+ * the indexed feature vectors instead of the names.
+ *
+ * While the dictionary is growing, unknown names get the next free id. Once it
+ * is frozen (e.g. a trained model is loaded) unknown names map to -1, which the
+ * indexed vectors simply ignore, as those features have no weights anyway.
+ * Lookups do not lock, so sharing a dictionary between threads is meant for frozen ones.
+ */
+public class FeatureDictionary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int UNKNOWN = -1;
+
+    // the most combined features remembered as unknown to a frozen dictionary, per kind
+    private static final int MAX_UNKNOWN = 1 << 18;
+
+    private final Map<String, Integer> index = new HashMap<>();
+
+    private final List<String> names = new ArrayList<>();
+
+    private volatile boolean frozen = false;
+
+    // caches of the known combined features, so that prefixing and crossing do not build names again
+    private transient Map<String, Integer> prefixes;
+    private transient Map<Long, Integer> prefixed;
+    private transient Map<Long, Integer> crossed;
+
+    // and of the combined features unknown to the frozen dictionary, so that a miss is not built again
+    private transient Set<Long> unknownPrefixed;
+    private transient Set<Long> unknownCrossed;
+
+    /****************************************************************
+     * Creates an empty, growing dictionary
+     */
+    public FeatureDictionary() {
+
+        initCaches();
+    }
+
+    /****************************************************************
+     * @return The id of the feature, adding it if the dictionary is still growing,
+     *         or UNKNOWN if it is frozen and the feature was never seen
+     */
+    public int index(String name) {
+
+        if (frozen)
+            return lookup(name);
+
+        synchronized (this) {
+            Integer id = index.get(name);
+            if (id != null)
+                return id;
+            if (frozen)
+                return UNKNOWN;
+
+            id = names.size();
+            index.put(name, id);
+            names.add(name);
+            return id;
+        }
+    }
+
+    /****************************************************************
+     * @return The id of the feature named "namespace_value"
+     */
+    public int index(String namespace, String value) {
+
+        return index(namespace + "_" + value);
+    }
+
+    /****************************************************************
+     * @return The id of the feature, or UNKNOWN, without growing the dictionary
+     */
+    public int lookup(String name) {
+
+        Integer id = index.get(name);
+        return id == null ? UNKNOWN : id;
+    }
+
+    /****************************************************************
+     * @return The name of the feature with the given id
+     */
+    public String name(int id) {
+
+        return names.get(id);
+    }
+
+    /****************************************************************
+     * @return The id of the feature named "prefix_name(id)", as built by
+     *         SparseFeatureVector.addPrefix
+     */
+    public int prefixed(String prefix, int id) {
+
+        if (id < 0)
+            return UNKNOWN;
+
+        Integer prefixId = prefixes.get(prefix);
+        if (prefixId == null)
+            prefixId = registerPrefix(prefix);
+
+        long key = ((long) prefixId << 32) | id;
+        Integer result = prefixed.get(key);
+        if (result == null) {
+            if (frozen && unknownPrefixed.contains(key))
+                return UNKNOWN;
+            result = index(String.format("%s_%s", prefix, name(id)));
+            if (result != UNKNOWN)
+                prefixed.put(key, result);
+            else if (unknownPrefixed.size() < MAX_UNKNOWN)
+                unknownPrefixed.add(key);
+        }
+
+        return result;
+    }
+
+    /****************************************************************
+     * @return The id of the bigram feature "name(first)_X_name(second)", as built by
+     *         SparseFeatureVector.cross
+     */
+    public int crossed(int first, int second) {
+
+        if (first < 0 || second < 0)
+            return UNKNOWN;
+
+        long key = ((long) first << 32) | second;
+        Integer result = crossed.get(key);
+        if (result == null) {
+            if (frozen && unknownCrossed.contains(key))
+                return UNKNOWN;
+            result = index(String.format("%s_X_%s", name(first), name(second)));
+            if (result != UNKNOWN)
+                crossed.put(key, result);
+            else if (unknownCrossed.size() < MAX_UNKNOWN)
+                unknownCrossed.add(key);
+        }
+
+        return result;
+    }
+
+    /****************************************************************
+     * @return The vector in the final feature space of the dictionary, which for
+     *         a plain dictionary is the vector itself
+     */
+    public IndexedFeatureVector fold(IndexedFeatureVector vector) {
+
+        return vector;
+    }
+
+    /****************************************************************
+     * Checks that the vectors of named features can be indexed by this dictionary,
+     * which they always can for a plain one
+     */
+    public void checkNamed() {
+    }
+
+    /****************************************************************
+     * @return A new, frozen dictionary of the features in @param keep, in the same order,
+     *         and of the features they are built from by prefixed() and crossed(), so that
+     *         featurizing into it still finds all the kept features. The parts are found by
+     *         their names: any name ending in "_part", or starting with "part_X_".
+     */
+    public FeatureDictionary retain(BitSet keep) {
+
+        boolean[] kept = new boolean[size()];
+        Deque<Integer> pending = new ArrayDeque<>();
+        for (int id = keep.nextSetBit(0); id >= 0 && id < kept.length; id = keep.nextSetBit(id + 1)) {
+            kept[id] = true;
+            pending.push(id);
+        }
+
+        // the parts of a kept feature are kept too, and their own parts in turn
+        while (!pending.isEmpty()) {
+            String name = names.get(pending.pop());
+            for (int i = name.indexOf('_'); i >= 0; i = name.indexOf('_', i + 1)) {
+                keepPart(name.substring(i + 1), kept, pending);
+                if (name.startsWith("_X_", i))
+                    keepPart(name.substring(0, i), kept, pending);
+            }
+        }
+
+        FeatureDictionary retained = new FeatureDictionary();
+        for (int id = 0; id < kept.length; id++) {
+            if (kept[id])
+                retained.index(names.get(id));
+        }
+        return retained.freeze();
+    }
+
+    /****************************************************************
+     * Keeps the feature named @param name, if there is one and it is not kept yet
+     */
+    private void keepPart(String name, boolean[] kept, Deque<Integer> pending) {
+
+        Integer id = index.get(name);
+        if (id != null && !kept[id]) {
+            kept[id] = true;
+            pending.push(id);
+        }
+    }
+
+    /****************************************************************
+     * @return A consumer passing the features to the @param sink in the final feature
+     *         space of the dictionary, as fold() does for a vector
+     */
+    public FeatureConsumer folding(FeatureConsumer sink) {
+
+        return sink;
+    }
+
+    /****************************************************************
+     * @return The id of a new prefix in the cache
+     */
+    private synchronized int registerPrefix(String prefix) {
+
+        prefixes.putIfAbsent(prefix, prefixes.size());
+        return prefixes.get(prefix);
+    }
+
+    /****************************************************************
+     * Stops the dictionary from growing
+     */
+    public FeatureDictionary freeze() {
+
+        frozen = true;
+        return this;
+    }
+
+    /****************************************************************
+     * Lets the dictionary grow again, e.g. for further training, so the unknown features
+     * are forgotten
+     */
+    public FeatureDictionary unfreeze() {
+
+        frozen = false;
+        unknownPrefixed.clear();
+        unknownCrossed.clear();
+        return this;
+    }
+
+    /****************************************************************
+     * @return Whether new features are no longer added
+     */
+    public boolean isFrozen() {
+
+        return frozen;
+    }
+
+    /****************************************************************
+     * @return The number of features in the dictionary, which bounds the feature ids
+     */
+    public int size() {
+
+        return names.size();
+    }
+
+    /****************************************************************
+     * Initializes the caches, which are not serialized
+     */
+    private void initCaches() {
+
+        prefixes = new ConcurrentHashMap<>();
+        prefixed = new ConcurrentHashMap<>();
+        crossed = new ConcurrentHashMap<>();
+        unknownPrefixed = ConcurrentHashMap.newKeySet();
+        unknownCrossed = ConcurrentHashMap.newKeySet();
+    }
+
+    /****************************************************************
+     * Restores the dictionary and its caches
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        initCaches();
+    }
+
+    /****************************************************************
+     * @return a short description of the feature space
+     */
+    @Override
+    public String toString() {
+
+        return String.format("%d named features", size());
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.features;
+
+import java.util.BitSet;
+
+/**
+ * A feature dictionary which does not store the names but hashes them (the hashing trick).
+ *
+ * While featurizing, the ids are 31 bit hashes, and prefixed and crossed features hash the
+ * ids they are made of, so no names are built for them. The final vector is folded into
+ * 2^bits buckets, and each feature gets a hashed sign so that colliding features tend to
+ * cancel out rather than add up. The weights of a model are therefore bounded by 2^bits
+ * features, however many words it sees.
+ *
+ * Note: a prefixed or crossed feature is hashed from its parts and not from its name, so
+ * a model over hashed features has to be used with directly indexed featurization
+ * (e.g. QCFeaturizationPipeline.featurize(String, FeatureDictionary)). Named vectors
+ * are rejected (see checkNamed), as their scores would be silently wrong.
+ */
+public class HashingFeatureDictionary extends FeatureDictionary {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int CROSS_SEED = 0x5bd1e995;
+    private static final int SIGN_SEED = 0x27d4eb2f;
+
+    private final int bits;
+
+    private final int mask;
+
+    /****************************************************************
+     * Creates a dictionary hashing into 2^@param bits features
+     */
+    public HashingFeatureDictionary(int bits) {
+
+        if (bits < 1 || bits > 30)
+            throw new IllegalArgumentException("The number of hashing bits should be between 1 and 30, got " + bits);
+
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+    }
+
+    /****************************************************************
+     * @return The hashed id of the feature
+     */
+    @Override
+    public int index(String name) {
+
+        return id(name.hashCode());
+    }
+
+    /****************************************************************
+     * @return The hashed id of the feature named "namespace_value", without building the name
+     */
+    @Override
+    public int index(String namespace, String value) {
+
+        // the same as (namespace + "_" + value).hashCode()
+        int h = namespace.hashCode() * 31 + '_';
+        for (int i = 0; i < value.length(); i++) {
+            h = 31 * h + value.charAt(i);
+        }
+        return id(h);
+    }
+
+    /****************************************************************
+     * @return The hashed id of the feature, all features are known
+     */
+    @Override
+    public int lookup(String name) {
+
+        return index(name);
+    }
+
+    /****************************************************************
+     * @return The names are not kept, so just a placeholder with the id
+     */
+    @Override
+    public String name(int id) {
+
+        return "#" + id;
+    }
+
+    /****************************************************************
+     * @return The hashed id of the feature prefixed by @param prefix
+     */
+    @Override
+    public int prefixed(String prefix, int id) {
+
+        if (id < 0)
+            return UNKNOWN;
+
+        return id(mix(prefix.hashCode()) * 31 + id);
+    }
+
+    /****************************************************************
+     * @return The hashed id of the bigram of the two features
+     */
+    @Override
+    public int crossed(int first, int second) {
+
+        if (first < 0 || second < 0)
+            return UNKNOWN;
+
+        return id(mix(mix(first ^ CROSS_SEED) + second));
+    }
+
+    /****************************************************************
+     * @return The vector folded into the 2^bits buckets, with the values signed by a hash
+     */
+    @Override
+    public IndexedFeatureVector fold(IndexedFeatureVector vector) {
+
+        IndexedFeatureVector folded = new IndexedFeatureVector(vector.size());
+        vector.forEach((k, v) -> folded.add(mix(k) & mask, mix(k ^ SIGN_SEED) < 0 ? -v : v));
+        return folded;
+    }
+
+    /****************************************************************
+     * @return This dictionary, as the hashed ids do not depend on the features seen
+     */
+    @Override
+    public FeatureDictionary retain(BitSet keep) {
+
+        return this;
+    }
+
+    /****************************************************************
+     * Rejects the vectors of named features, whose prefixed and crossed features
+     * would be hashed from their names instead of their parts
+     */
+    @Override
+    public void checkNamed() {
+
+        throw new IllegalStateException("Named feature vectors cannot be indexed by a hashing dictionary, " +
+                "the features have to be indexed directly");
+    }
+
+    /****************************************************************
+     * @return A consumer passing the features to the @param sink folded and signed as by fold()
+     */
+    @Override
+    public FeatureConsumer folding(FeatureConsumer sink) {
+
+        return (k, v) -> sink.accept(mix(k) & mask, mix(k ^ SIGN_SEED) < 0 ? -v : v);
+    }
+
+    /****************************************************************
+     * @return The number of buckets, which bounds the folded feature ids
+     */
+    @Override
+    public int size() {
+
+        return 1 << bits;
+    }
+
+    /****************************************************************
+     * @return The number of hashing bits
+     */
+    public int bits() {
+
+        return bits;
+    }
+
+    /****************************************************************
+     * @return a non negative id from a hash
+     */
+    private static int id(int h) {
+
+        return mix(h) & Integer.MAX_VALUE;
+    }
+
+    /****************************************************************
+     * @return the murmur3 finalizer of @param h, which spreads all the bits
+     */
+    private static int mix(int h) {
+
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /****************************************************************
+     * @return a short description of the feature space
+     */
+    @Override
+    public String toString() {
+
+        return String.format("features hashed into 2^%d buckets", bits);
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.features;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sparse vector over integer feature ids (see FeatureDictionary), the primitive
+ * counterpart of SparseFeatureVector.
+ *
+ * The features are kept in an open addressing hash table of ints and doubles,
+ * so none of the operations box the ids or the values. Negative ids stand for
+ * unknown features and are ignored.
+ */
+public class IndexedFeatureVector implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+
+    private double[] values;
+
+    private int size = 0;
+
+    /****************************************************************
+     * Creates an empty feature vector
+     */
+    public IndexedFeatureVector() {
+
+        this(4);
+    }
+
+    /****************************************************************
+     * Creates an empty feature vector with room for @param expectedSize features
+     */
+    public IndexedFeatureVector(int expectedSize) {
+
+        allocate(capacity(expectedSize));
+    }
+
+    /****************************************************************
+     * @return The number of features in the vector
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /****************************************************************
+     * @return Get the value of a feature based on its id
+     */
+    public double value(int feature) {
+
+        if (feature < 0)
+            return 0.0;
+
+        int i = slot(feature);
+        return keys[i] == FREE ? 0.0 : values[i];
+    }
+
+    /****************************************************************
+     * Adds a feature with a default value of 1.0
+     */
+    public void add(int feature) {
+
+        add(feature, 1.0);
+    }
+
+    /****************************************************************
+     * Adds a value to a feature. Unlike with the named vector, adding an
+     * existing feature sums the values.
+     */
+    public void add(int feature, double value) {
+
+        if (feature < 0)
+            return;
+
+        int i = slot(feature);
+        if (keys[i] == FREE) {
+            keys[i] = feature;
+            values[i] = value;
+            grow();
+        }
+        else {
+            values[i] += value;
+        }
+    }
+
+    /****************************************************************
+     * Adds the other features to this one by adding values
+     */
+    public void add(IndexedFeatureVector other) {
+
+        add(other, 1.0);
+    }
+
+    /****************************************************************
+     * Adds the other features, weighted by a scalar @param w, to this one,
+     * without creating the weighted vector first
+     */
+    public void add(IndexedFeatureVector other, double w) {
+
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != FREE)
+                add(other.keys[i], other.values[i] * w);
+        }
+    }
+
+    /****************************************************************
+     * Merge another vector into this one (by averaging the value)
+     */
+    public void mergeWith(IndexedFeatureVector other) {
+
+        for (int j = 0; j < other.keys.length; j++) {
+            if (other.keys[j] != FREE)
+                merge(other.keys[j], other.values[j]);
+        }
+    }
+
+    /****************************************************************
+     * Merges a single feature into this vector, as mergeWith() does for each feature
+     */
+    public void merge(int feature, double value) {
+
+        if (feature < 0)
+            return;
+
+        int i = slot(feature);
+        if (keys[i] == FREE) {
+            keys[i] = feature;
+            values[i] = value;
+            grow();
+        }
+        else {
+            values[i] = (values[i] + value) / 2.0;
+        }
+    }
+
+    /****************************************************************
+     * Removes all the features, keeping the allocated tables, so that the vector can be reused
+     */
+    public void clear() {
+
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    /****************************************************************
+     * @return An inner product of this vector with the other vector
+     */
+    public double dot(IndexedFeatureVector other) {
+
+        if (other.size < size)
+            return other.dot(this);
+
+        double result = 0.0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE)
+                result += values[i] * other.value(keys[i]);
+        }
+        return result;
+    }
+
+    /****************************************************************
+     * @return a new vector which contains weighted values by a scalar @param w
+     */
+    public IndexedFeatureVector mult(double w) {
+
+        IndexedFeatureVector result = new IndexedFeatureVector(0);
+        result.keys = keys.clone();
+        result.values = new double[values.length];
+        result.size = size;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE)
+                result.values[i] = values[i] * w;
+        }
+        return result;
+    }
+
+    /****************************************************************
+     * @return Adds a prefix to all the features and returns a new vector
+     */
+    public IndexedFeatureVector addPrefix(String prefix, FeatureDictionary features) {
+
+        IndexedFeatureVector prefixed = new IndexedFeatureVector(size);
+        forEach((k, v) -> prefixed.add(features.prefixed(prefix, k), v));
+        return prefixed;
+    }
+
+    /****************************************************************
+     * @return a cartezian product of this vector with the other to create bigram
+     *         features
+     */
+    public IndexedFeatureVector cross(IndexedFeatureVector other, FeatureDictionary features) {
+
+        IndexedFeatureVector crossed = new IndexedFeatureVector(size * other.size);
+        cross(other, features, crossed);
+        return crossed;
+    }
+
+    /****************************************************************
+     * Adds the bigram features of this vector with the other to @param crossed
+     */
+    public void cross(IndexedFeatureVector other, FeatureDictionary features, IndexedFeatureVector crossed) {
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == FREE)
+                continue;
+            for (int j = 0; j < other.keys.length; j++) {
+                if (other.keys[j] != FREE)
+                    crossed.add(features.crossed(keys[i], other.keys[j]));
+            }
+        }
+    }
+
+    /****************************************************************
+     * @return a vector which was merged from a list of @param vectors. The values are summed,
+     *         which is what SparseFeatureVector.merge effectively does, and the trained
+     *         models rely on it.
+     */
+    public static IndexedFeatureVector merge(List<IndexedFeatureVector> vectors) {
+
+        IndexedFeatureVector result = new IndexedFeatureVector(vectors.stream().mapToInt(v -> v.size).sum());
+        vectors.forEach(result::add);
+        return result;
+    }
+
+    /****************************************************************
+     * @return cosine similarity of this vector and the other
+     */
+    public double similarity(IndexedFeatureVector other) {
+
+        return this.dot(other) / Math.sqrt(this.dot(this) * other.dot(other));
+    }
+
+    /****************************************************************
+     * Visits all the features of the vector
+     */
+    public void forEach(FeatureConsumer consumer) {
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE)
+                consumer.accept(keys[i], values[i]);
+        }
+    }
+
+    /****************************************************************
+     * @return The named vector with the same features
+     */
+    public SparseFeatureVector toSparse(FeatureDictionary features) {
+
+        SparseFeatureVector result = new SparseFeatureVector();
+        forEach((k, v) -> result.add(features.name(k), v));
+        return result;
+    }
+
+    /****************************************************************
+     * @return the slot of the feature, either holding it or the free one where it belongs
+     */
+    private int slot(int feature) {
+
+        int mask = keys.length - 1;
+        int i = mix(feature) & mask;
+        while (keys[i] != FREE && keys[i] != feature)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /****************************************************************
+     * Counts a newly occupied slot and rehashes when the table gets too full
+     */
+    private void grow() {
+
+        if (++size <= keys.length - (keys.length >>> 2))
+            return;
+
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        allocate(keys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /****************************************************************
+     * Allocates empty tables of the given capacity
+     */
+    private void allocate(int capacity) {
+
+        keys = new int[capacity];
+        values = new double[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    /****************************************************************
+     * @return a power of two capacity which holds @param expectedSize features
+     *         below the load factor
+     */
+    private static int capacity(int expectedSize) {
+
+        int capacity = 4;
+        while (capacity - (capacity >>> 2) < expectedSize)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    /****************************************************************
+     * @return a scrambled id, as the ids are mostly consecutive
+     */
+    private static int mix(int feature) {
+
+        int h = feature * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /****************************************************************
+     * @return a string representation of the vector
+     */
+    @Override
+    public String toString() {
+
+        StringBuilder b = new StringBuilder();
+        forEach((k, v) -> b.append(String.format("%d : %s\n", k, v)));
+        return b.toString();
+    }
+}
@@ -58,4 +58,56 @@ public class LexicalizedFeaturizer extends WordFeaturizer {
 
         return result;
     }
+
+    /****************************************************************
+     * @return an indexed feature vector containing just the word itself
+     */
+    @Override
+    public IndexedFeatureVector featurize(String word, FeatureDictionary features) {
+
+        IndexedFeatureVector result = new IndexedFeatureVector();
+        result.add(index(word, features));
+        return result;
+    }
+
+    /****************************************************************
+     * @return the id of the feature of the word itself
+     */
+    int index(String word, FeatureDictionary features) {
+
+        return features.index(LEXICALIZED, word);
+    }
+
+    /****************************************************************
+     * @return indexed feature vector with shape and lemma features
+     */
+    @Override
+    public IndexedFeatureVector featurize(IndexedWord word, FeatureDictionary features) {
+
+        IndexedFeatureVector result = featurize(word.lemma(), features);
+        result.mergeWith(featurize(WordShapeClassifier.wordShape(word.word(), WordShapeClassifier.WORDSHAPEDAN2), features));
+        return result;
+    }
+
+    /****************************************************************
+     * @return the lemma and the word, of which the features are made
+     */
+    @Override
+    String key(IndexedWord word) {
+
+        return word.lemma() + " " + word.word();
+    }
+
+    /****************************************************************
+     * Emits the lemma and shape features, a shape equal to the lemma merged into it
+     */
+    @Override
+    public void emit(IndexedWord word, FeatureDictionary features, FeatureConsumer sink) {
+
+        int lemma = index(word.lemma(), features);
+        int shape = index(WordShapeClassifier.wordShape(word.word(), WordShapeClassifier.WORDSHAPEDAN2), features);
+        sink.accept(lemma, 1.0);
+        if (shape != lemma)
+            sink.accept(shape, 1.0);
+    }
 }
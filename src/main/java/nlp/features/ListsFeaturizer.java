@@ -10,6 +10,8 @@
 
 package nlp.features;
 
+import edu.stanford.nlp.ling.IndexedWord;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -64,4 +66,30 @@ public class ListsFeaturizer extends WordFeaturizer {
         }
         return result;
     }
+
+    /****************************************************************
+     * @return The indexed feature vector with the lists features
+     */
+    @Override
+    IndexedFeatureVector featurize(String word, FeatureDictionary features) {
+
+        IndexedFeatureVector result = new IndexedFeatureVector();
+
+        String list = index.get(word);
+        if (list != null) {
+            result.add(features.index(LIST, list));
+        }
+        return result;
+    }
+
+    /****************************************************************
+     * Emits the list feature of the word, if it is in a list
+     */
+    @Override
+    public void emit(IndexedWord word, FeatureDictionary features, FeatureConsumer sink) {
+
+        String list = index.get(word.word());
+        if (list != null)
+            sink.accept(features.index(LIST, list), 1.0);
+    }
 }
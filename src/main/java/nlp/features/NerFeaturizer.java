@@ -49,4 +49,47 @@ public class NerFeaturizer extends WordFeaturizer {
 
         return result;
     }
+
+    /****************************************************************
+     * @return Should not be used with this featurizer
+     */
+    @Override
+    IndexedFeatureVector featurize(String word, FeatureDictionary features) {
+
+        throw new RuntimeException("Should not be used!");
+    }
+
+    /****************************************************************
+     * @return An indexed feature vector based on whether the word participates in an entity
+     */
+    @Override
+    public IndexedFeatureVector featurize(IndexedWord word, FeatureDictionary features) {
+
+        IndexedFeatureVector result = new IndexedFeatureVector();
+
+        if (word.ner() != null) {
+            result.add(features.index("FOCUS_NER", word.ner()));
+        }
+
+        return result;
+    }
+
+    /****************************************************************
+     * @return the entity type of the word, of which the feature is made
+     */
+    @Override
+    String key(IndexedWord word) {
+
+        return String.valueOf(word.ner());
+    }
+
+    /****************************************************************
+     * Emits the entity feature of the word, if it participates in an entity
+     */
+    @Override
+    public void emit(IndexedWord word, FeatureDictionary features, FeatureConsumer sink) {
+
+        if (word.ner() != null)
+            sink.accept(features.index("FOCUS_NER", word.ner()), 1.0);
+    }
 }
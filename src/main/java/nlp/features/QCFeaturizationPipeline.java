@@ -12,22 +12,48 @@ package nlp.features;
 
 import nlp.qa.QuestionFociExtractor;
 import nlp.qa.QuestionFociTerms;
+import nlp.qa.QuestionTokensExtractor;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
- * The featurization pipeline for question classification
+ * The featurization pipeline for question classification.
+ *
+ * The features of the words are cached (the words of the questions are very skewed, and the
+ * featurizers redo lookups and build names for each), see FeatureCache.
+ *
+ * The fast() pipeline is a cheap one for the first stage of a cascade: it needs no parse and no
+ * models, and featurizes only the tokens (lemmas, shapes and their bigrams) and the question word.
  */
 public class QCFeaturizationPipeline {
 
     private final static String browClustersModel = "brown-rcv1.clean.tokenized-CoNLL03.txt-c1000-freq1.txt";
     private final static String wordvecModel = "glove.6B.50d.txt";
+    private final static String wordvecBinaryModel = "glove.6B.50d.bin";
     private final static String listDir = "lists";
 
+    private final static String fastConfiguration = "fast:lexicalized,questionword";
+
+    // the number of words whose features are cached, see FeatureCache
+    private final static int cachedWords = 100000;
+
     public final QuestionFociExtractor extractor;
     private final WordFeaturizer pipeline;
     public final WordVecFeaturizer wordVecFeaturizer;
+    private final boolean fast;
+    public final FeatureCache cache = new FeatureCache(cachedWords);
+    private final QuestionWordFeaturizer questionWordFeaturizer = new QuestionWordFeaturizer();
+
+    // the vector the features are merged into by emit(), reused by each thread
+    private final ThreadLocal<IndexedFeatureVector> buffer = ThreadLocal.withInitial(IndexedFeatureVector::new);
 
     /****************************************************************
      * Creates the featurization pipeline which loads all the models
@@ -35,10 +61,17 @@ public class QCFeaturizationPipeline {
     public QCFeaturizationPipeline(String modelsPath) throws IOException {
 
         this.extractor = new QuestionFociExtractor();
+        this.fast = false;
 
         LexicalizedFeaturizer lexicalizedFeaturizer = new LexicalizedFeaturizer();
         BrownClusters clusters = BrownClustersFeaturizer.loadClusters(Paths.get(modelsPath, browClustersModel));
-        this.wordVecFeaturizer = new WordVecFeaturizer(Paths.get(modelsPath, wordvecModel));
+
+        // the text vectors are converted once into the binary format, which is mapped from then on
+        Path wordvecBinary = Paths.get(modelsPath, wordvecBinaryModel);
+        if (!Files.exists(wordvecBinary))
+            WordVectors.convert(Paths.get(modelsPath, wordvecModel), wordvecBinary);
+        this.wordVecFeaturizer = new WordVecFeaturizer(wordvecBinary);
+
         ListsFeaturizer listsFeaturizer = new ListsFeaturizer(Paths.get(modelsPath, listDir));
 
         this.pipeline = lexicalizedFeaturizer.
@@ -48,7 +81,60 @@ public class QCFeaturizationPipeline {
                 combine(new BrownClustersFeaturizer(clusters, 6)).
                 combine(new BrownClustersFeaturizer(clusters, 10)).
                 combine(new BrownClustersFeaturizer(clusters, 20)).
-                combine(new NerFeaturizer());
+                combine(new NerFeaturizer()).
+                cached(cache);
+    }
+
+    /****************************************************************
+     * Creates the fast pipeline over the tokens of the question
+     */
+    private QCFeaturizationPipeline() {
+
+        this.extractor = new QuestionTokensExtractor();
+        this.fast = true;
+        this.pipeline = new LexicalizedFeaturizer().cached(cache);
+        this.wordVecFeaturizer = null;
+    }
+
+    /****************************************************************
+     * @return the fast featurization pipeline, which does not parse the questions
+     */
+    public static QCFeaturizationPipeline fast() {
+
+        return new QCFeaturizationPipeline();
+    }
+
+    /****************************************************************
+     * @return a description of the featurization of the fast pipeline, see configuration()
+     */
+    public static String fastConfiguration() {
+
+        return fastConfiguration;
+    }
+
+    /****************************************************************
+     * @return a description of the featurization with the models in @param modelsPath,
+     *         without loading them, which changes whenever the features may change:
+     *         the featurizers and the names, sizes and modification times of the model files
+     */
+    public static String configuration(String modelsPath) throws IOException {
+
+        StringBuilder b = new StringBuilder("lexicalized,wordvec,lists,brown4,brown6,brown10,brown20,ner,questionword");
+
+        // the text vectors when they are there, as the binary ones are created from them
+        Path wordvec = Paths.get(modelsPath, wordvecModel);
+        if (!Files.exists(wordvec))
+            wordvec = Paths.get(modelsPath, wordvecBinaryModel);
+
+        List<Path> files = new ArrayList<>(Arrays.asList(Paths.get(modelsPath, browClustersModel), wordvec));
+        try (Stream<Path> lists = Files.list(Paths.get(modelsPath, listDir))) {
+            lists.sorted().forEach(files::add);
+        }
+
+        for (Path file : files) {
+            b.append(String.format("|%s:%d:%s", file.getFileName(), Files.size(file), Files.getLastModifiedTime(file)));
+        }
+        return b.toString();
     }
 
     /****************************************************************
@@ -57,7 +143,14 @@ public class QCFeaturizationPipeline {
     public SparseFeatureVector featurize(String sentence) {
 
         // extract the important information from the sentence
-        QuestionFociTerms qt = extractor.extractQuestionFociWordsWithType(sentence);
+        return featurize(extractor.extractQuestionFociWordsWithType(sentence));
+    }
+
+    /****************************************************************
+     * @return a feature vector representing the sentence of the already extracted
+     *         @param qt, e.g. by another extractor
+     */
+    public SparseFeatureVector featurize(QuestionFociTerms qt) {
 
         if (qt.questionWord.isEmpty()) {
             return null;
@@ -72,4 +165,98 @@ public class QCFeaturizationPipeline {
 
         return fromPipeline;
     }
+
+    /****************************************************************
+     * @return an indexed feature vector representing the sentence, with the
+     *         feature ids taken from @param features
+     */
+    public IndexedFeatureVector featurize(String sentence, FeatureDictionary features) {
+
+        return featurize(extractor.extractQuestionFociWordsWithType(sentence), features);
+    }
+
+    /****************************************************************
+     * @return an indexed feature vector representing the sentence of the already
+     *         extracted @param qt, with the feature ids taken from @param features
+     */
+    public IndexedFeatureVector featurize(QuestionFociTerms qt, FeatureDictionary features) {
+
+        if (qt.questionWord.isEmpty()) {
+            return null;
+        }
+
+        IndexedFeatureVector fromPipeline = pipeline.featurize(qt.termsWithTypes, features);
+
+        fromPipeline.mergeWith(questionWordFeaturizer.featurize(qt.questionWord, features));
+        fromPipeline.mergeWith(questionWordFeaturizer.featurize(qt.questionType, features));
+
+        return features.fold(fromPipeline);
+    }
+
+    /****************************************************************
+     * Featurizes the @param sentences, parsed on @param threads threads (see
+     * QuestionFociExtractor.extractQuestionFociWordsWithType), and gives their feature vectors
+     * (null for the ones without a question word) to the @param callback in the order of the
+     * sentences. The vectors are featurized in that order, so the new features get the same ids
+     * as when featurizing one sentence after the other.
+     */
+    public void featurize(List<String> sentences, int threads, Consumer<SparseFeatureVector> callback) {
+
+        extractor.extractQuestionFociWordsWithType(sentences, threads, qt -> callback.accept(featurize(qt)));
+    }
+
+    /****************************************************************
+     * Featurizes the @param sentences, parsed on @param threads threads, into indexed feature
+     * vectors with the feature ids taken from @param features, and gives them to the
+     * @param callback in the order of the sentences, see featurize(sentences, threads, callback)
+     */
+    public void featurize(List<String> sentences, FeatureDictionary features, int threads,
+                          Consumer<IndexedFeatureVector> callback) {
+
+        extractor.extractQuestionFociWordsWithType(sentences, threads, qt -> callback.accept(featurize(qt, features)));
+    }
+
+    /****************************************************************
+     * @return the indexed feature vectors of the @param sentences in their order, parsed on
+     *         @param threads threads, with the feature ids taken from @param features
+     */
+    public List<IndexedFeatureVector> featurize(List<String> sentences, FeatureDictionary features, int threads) {
+
+        List<IndexedFeatureVector> vectors = new ArrayList<>(sentences.size());
+        featurize(sentences, features, threads, vectors::add);
+        return vectors;
+    }
+
+    /****************************************************************
+     * Emits the features of the sentence into the @param sink, see emit(qt, features, sink)
+     * @return false if the sentence has no question word
+     */
+    public boolean emit(String sentence, FeatureDictionary features, FeatureConsumer sink) {
+
+        return emit(extractor.extractQuestionFociWordsWithType(sentence), features, sink);
+    }
+
+    /****************************************************************
+     * Emits the features of the already extracted @param qt into the @param sink, the same
+     * features with the same values as the vector of featurize(qt, features), but without
+     * allocating vectors for the words, the featurizers and the folding. E.g. a scoring sink
+     * then classifies the question without any feature vector built for it.
+     * @return false if the question has no question word, for which featurize() returns null
+     */
+    public boolean emit(QuestionFociTerms qt, FeatureDictionary features, FeatureConsumer sink) {
+
+        if (qt.questionWord.isEmpty()) {
+            return false;
+        }
+
+        IndexedFeatureVector merged = buffer.get();
+        merged.clear();
+        pipeline.emit(qt.termsWithTypes, features, merged::add);
+
+        merged.merge(questionWordFeaturizer.question(qt.questionWord, features), 1.0);
+        merged.merge(questionWordFeaturizer.question(qt.questionType, features), 1.0);
+
+        merged.forEach(features.folding(sink));
+        return true;
+    }
 }
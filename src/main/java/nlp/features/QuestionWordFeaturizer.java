@@ -35,4 +35,21 @@ public class QuestionWordFeaturizer extends LexicalizedFeaturizer {
 
         return super.featurize(String.format("%s_%s", QUESTION, word));
     }
+
+    /****************************************************************
+     * @return An indexed feature vector based on the question word
+     */
+    @Override
+    public IndexedFeatureVector featurize(String word, FeatureDictionary features) {
+
+        return super.featurize(QUESTION + "_" + word, features);
+    }
+
+    /****************************************************************
+     * @return The id of the feature of the question word, as featurize(word, features) has
+     */
+    int question(String word, FeatureDictionary features) {
+
+        return index(QUESTION + "_" + word, features);
+    }
 }
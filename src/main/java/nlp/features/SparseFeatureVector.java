@@ -145,6 +145,18 @@ public class SparseFeatureVector implements Serializable {
         return result;
     }
 
+    /****************************************************************
+     * @return the indexed vector with the same features, with the ids from @param features,
+     *         which must not hash them
+     */
+    public IndexedFeatureVector toIndexed(FeatureDictionary features) {
+
+        features.checkNamed();
+        IndexedFeatureVector result = new IndexedFeatureVector(this.features.size());
+        this.features.forEach((k, v) -> result.add(features.index(k), v));
+        return features.fold(result);
+    }
+
     public double similarity(SparseFeatureVector other) {
 
         return this.dot(other) / Math.sqrt(this.dot(this) * other.dot(other));
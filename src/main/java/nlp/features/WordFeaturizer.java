@@ -24,6 +24,9 @@ import java.util.stream.IntStream;
  */
 public abstract class WordFeaturizer implements Combiner {
 
+    // the cache of the features of single words, if any
+    FeatureCache cache;
+
     /****************************************************************
      * @return wether to use in bigrams
      */
@@ -34,6 +37,11 @@ public abstract class WordFeaturizer implements Combiner {
      */
     abstract SparseFeatureVector featurize(String word);
 
+    /****************************************************************
+     * @return an indexed feature from the word, with ids from @param features
+     */
+    abstract IndexedFeatureVector featurize(String word, FeatureDictionary features);
+
     /****************************************************************
      * @return a feature from the indexed word
      */
@@ -68,6 +76,137 @@ public abstract class WordFeaturizer implements Combiner {
         return result;
     }
 
+    /****************************************************************
+     * @return an indexed feature from the indexed word
+     */
+    public IndexedFeatureVector featurize(IndexedWord word, FeatureDictionary features) {
+
+        return featurize(word.word(), features);
+    }
+
+    /****************************************************************
+     * @return featurize a list of indexed words and combine the results,
+     *         the same way as the named features, but into feature ids
+     */
+    public IndexedFeatureVector featurize(List<Pair<IndexedWord, String>> extractedWords, FeatureDictionary features) {
+
+        IndexedFeatureVector result = new IndexedFeatureVector();
+
+        List<IndexedFeatureVector> wordFeatures = new ArrayList<>();
+        extractedWords.forEach(w -> wordFeatures.add(cached(w.first, features).addPrefix(w.second, features)));
+
+        wordFeatures.forEach(result::mergeWith);
+
+        if (doBigrams()) {
+
+            extractedWords.sort(Comparator.comparingInt(w -> w.first.index()));
+            IntStream.range(0, wordFeatures.size() - 1).forEach(i ->
+                    result.mergeWith(wordFeatures.get(i).cross(wordFeatures.get(i + 1), features)));
+        }
+
+        return result;
+    }
+
+    /****************************************************************
+     * Emits the indexed features of the word into the @param sink, by default the ones of
+     * featurize(word, features), which featurizers override to emit them without a vector
+     */
+    public void emit(IndexedWord word, FeatureDictionary features, FeatureConsumer sink) {
+
+        featurize(word, features).forEach(sink);
+    }
+
+    /****************************************************************
+     * @return the indexed features of the word, through the cache if there is one
+     */
+    private IndexedFeatureVector cached(IndexedWord word, FeatureDictionary features) {
+
+        if (cache == null)
+            return featurize(word, features);
+
+        IndexedFeatureVector result = new IndexedFeatureVector();
+        cache.emit(this, word, features, result::add);
+        return result;
+    }
+
+    /****************************************************************
+     * @return the part of the word the features of this featurizer depend on, which
+     *         featurizers looking at more than the word itself override
+     */
+    String key(IndexedWord word) {
+
+        return word.word();
+    }
+
+    /****************************************************************
+     * Caches the features of single words in the @param cache from now on
+     * @return this featurizer
+     */
+    public WordFeaturizer cached(FeatureCache cache) {
+
+        this.cache = cache;
+        return this;
+    }
+
+    /****************************************************************
+     * Emits the features of a list of indexed words into the @param sink, the same features
+     * with the same values as featurize(extractedWords, features) gives (including sorting the
+     * list for the bigrams), but the vectors of the words are buffers reused by each thread
+     */
+    public void emit(List<Pair<IndexedWord, String>> extractedWords, FeatureDictionary features, FeatureConsumer sink) {
+
+        Buffers b = buffers.get();
+        b.result.clear();
+
+        for (int i = 0; i < extractedWords.size(); i++) {
+            Pair<IndexedWord, String> w = extractedWords.get(i);
+            IndexedFeatureVector word = b.word(i);
+            FeatureConsumer prefixing = (k, v) -> word.add(features.prefixed(w.second, k), v);
+            if (cache == null)
+                emit(w.first, features, prefixing);
+            else
+                cache.emit(this, w.first, features, prefixing);
+            b.result.mergeWith(word);
+        }
+
+        if (doBigrams()) {
+
+            extractedWords.sort(Comparator.comparingInt(w -> w.first.index()));
+            for (int i = 0; i < extractedWords.size() - 1; i++) {
+                b.crossed.clear();
+                b.words.get(i).cross(b.words.get(i + 1), features, b.crossed);
+                b.result.mergeWith(b.crossed);
+            }
+        }
+
+        b.result.forEach(sink);
+    }
+
+    /**
+     * The vectors reused by the emitting of a thread
+     */
+    private static class Buffers {
+
+        final IndexedFeatureVector result = new IndexedFeatureVector();
+        final IndexedFeatureVector crossed = new IndexedFeatureVector();
+        final List<IndexedFeatureVector> words = new ArrayList<>();
+
+        /****************************************************************
+         * @return the cleared vector of the @param i-th word
+         */
+        IndexedFeatureVector word(int i) {
+
+            while (words.size() <= i) {
+                words.add(new IndexedFeatureVector());
+            }
+            IndexedFeatureVector word = words.get(i);
+            word.clear();
+            return word;
+        }
+    }
+
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
     /****************************************************************
      * @return a combining featurizer which can be used to further
      *         add featurizers to it
@@ -105,6 +244,15 @@ class CombiningFeaturizer extends WordFeaturizer implements Combiner {
         throw new RuntimeException("Should not be used!");
     }
 
+    /****************************************************************
+     * only the list featurize method should be used
+     */
+    @Override
+    IndexedFeatureVector featurize(String word, FeatureDictionary features) {
+
+        throw new RuntimeException("Should not be used!");
+    }
+
     /****************************************************************
      * @return runs over all the featurizers and merges the features
      */
@@ -114,6 +262,39 @@ class CombiningFeaturizer extends WordFeaturizer implements Combiner {
                 map(r -> r.featurize(extractedWords)).collect(Collectors.toList()));
     }
 
+    /****************************************************************
+     * @return runs over all the featurizers and merges the indexed features
+     */
+    public IndexedFeatureVector featurize(List<Pair<IndexedWord, String>> extractedWords, FeatureDictionary features) {
+
+        return IndexedFeatureVector.merge(featurizers.stream().
+                map(r -> r.featurize(extractedWords, features)).collect(Collectors.toList()));
+    }
+
+    /****************************************************************
+     * Runs over all the featurizers, each emitting into the @param sink, which so receives
+     * the features of the merged vector of featurize(extractedWords, features) as sums
+     */
+    @Override
+    public void emit(List<Pair<IndexedWord, String>> extractedWords, FeatureDictionary features, FeatureConsumer sink) {
+
+        for (WordFeaturizer featurizer : featurizers) {
+            featurizer.emit(extractedWords, features, sink);
+        }
+    }
+
+    /****************************************************************
+     * Caches the features of single words of all the featurizers in the @param cache
+     * @return this featurizer
+     */
+    @Override
+    public WordFeaturizer cached(FeatureCache cache) {
+
+        this.cache = cache;
+        featurizers.forEach(f -> f.cached(cache));
+        return this;
+    }
+
     /****************************************************************
      * @return same instance that can be used further for featurization
      */
@@ -121,6 +302,8 @@ class CombiningFeaturizer extends WordFeaturizer implements Combiner {
     public WordFeaturizer combine(WordFeaturizer featurizer) {
 
         featurizers.add(featurizer);
+        if (cache != null)
+            featurizer.cached(cache);
         return this;
     }
 }
@@ -10,49 +10,60 @@
 
 package nlp.features;
 
+import edu.stanford.nlp.ling.IndexedWord;
+
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.FloatBuffer;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.stream.IntStream;
 
 /**
- * A word vectors featurizer
+ * A word vectors featurizer, reading the vectors from a memory mapped WordVectors file
  */
 public class WordVecFeaturizer extends WordFeaturizer {
 
     private final static String baseName = "WORDVEC";
 
-    private Map<String, Double[]> vectors = new HashMap<>();
+    private final WordVectors vectors;
+
+    private final int size;
 
-    private int size = -1;
+    // the feature names of the vector dimensions
+    private final String[] names;
 
     /****************************************************************
-     * @return an instance of a word vec featurizer
+     * @return an instance of a word vec featurizer over the binary
+     *         word vectors file (see WordVectors.convert)
      */
     public WordVecFeaturizer(Path path) throws IOException {
 
-        Files.lines(path).forEach(line -> {
-
-            String[] vals = line.split(" ");
-            // creating a new instance to generate a small footprint in RAM
-            String key = new String(vals[0]);
-            Double[] vector = new Double[vals.length - 1];
-            IntStream.range(1, vals.length).forEach(i -> vector[i - 1] = Double.parseDouble(vals[i]));
-            vectors.put(key, vector);
-            if (size != -1 && size != vector.length)
-                throw new RuntimeException("Not consistent wordvec size");
-            size = vector.length;
-        });
+        this.vectors = WordVectors.load(path);
+        this.size = vectors.dimension();
+        this.names = IntStream.range(0, size).mapToObj(this::name).toArray(String[]::new);
+    }
+
+    /****************************************************************
+     * @return a view of the vector of a word given by the key @param key,
+     *         or null if there is no vector for the word
+     */
+    public FloatBuffer get(String word) {
+
+        int row = vectors.row(word);
+        return row < 0 ? null : vectors.vector(row);
     }
 
     /****************************************************************
-     * @return a vector of a word given by the key @param key
+     * @return the cosine similarity of the vectors of the two words (case insensitive),
+     *         NaN if either has no vector, like with the empty feature vectors
      */
-    public Double[] get(String word) {
+    public double similarity(String first, String second) {
+
+        int firstRow = vectors.row(first.toLowerCase());
+        int secondRow = vectors.row(second.toLowerCase());
+        if (firstRow < 0 || secondRow < 0)
+            return Double.NaN;
 
-        return vectors.get(word);
+        return vectors.similarity(firstRow, secondRow);
     }
 
     /****************************************************************
@@ -78,16 +89,45 @@ public class WordVecFeaturizer extends WordFeaturizer {
     @Override
     public SparseFeatureVector featurize(String word) {
 
-        word = word.toLowerCase();
-
         SparseFeatureVector features = new SparseFeatureVector();
 
-        if (!vectors.containsKey(word))
+        int row = vectors.row(word.toLowerCase());
+        if (row < 0)
             return features;
 
-        Double[] vector = get(word);
-
-        IntStream.range(0, size).forEach(i -> features.add(name(i), vector[i]));
+        IntStream.range(0, size).forEach(i -> features.add(names[i], (double) vectors.get(row, i)));
         return features;
     }
+
+    /****************************************************************
+     * @return An indexed feature vector representing the word
+     */
+    @Override
+    public IndexedFeatureVector featurize(String word, FeatureDictionary features) {
+
+        int row = vectors.row(word.toLowerCase());
+        if (row < 0)
+            return new IndexedFeatureVector();
+
+        IndexedFeatureVector result = new IndexedFeatureVector(size);
+        for (int i = 0; i < size; i++) {
+            result.add(features.index(names[i]), vectors.get(row, i));
+        }
+        return result;
+    }
+
+    /****************************************************************
+     * Emits the dimensions of the vector of the word
+     */
+    @Override
+    public void emit(IndexedWord word, FeatureDictionary features, FeatureConsumer sink) {
+
+        int row = vectors.row(word.word().toLowerCase());
+        if (row < 0)
+            return;
+
+        for (int i = 0; i < size; i++) {
+            sink.accept(features.index(names[i]), vectors.get(row, i));
+        }
+    }
 }
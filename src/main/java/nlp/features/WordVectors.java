@@ -0,0 +1,265 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.features;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Word vectors in a compact binary file, which is memory mapped rather than loaded,
+ * so the vectors are read straight from the (shared, page cached) file.
+ *
+ * The file is created once from the GloVe text format by convert() and consists of:
+ * a header (magic, version, number of words, dimension, table size), an open addressing
+ * hash table from words to rows, the offsets of the words, the words as UTF-16 chars,
+ * and a words x dimension float32 matrix.
+ */
+public class WordVectors {
+
+    private static final int MAGIC = 0x57564543;
+    private static final int VERSION = 1;
+    private static final int HEADER = 5 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+
+    private final int words;
+    private final int dimension;
+    private final int tableMask;
+
+    // where the sections start in the buffer
+    private final int offsetsStart;
+    private final int charsStart;
+    private final int matrixStart;
+
+    /****************************************************************
+     * @return word vectors over a mapped buffer
+     */
+    private WordVectors(ByteBuffer buffer) throws IOException {
+
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("Not a word vectors file of version " + VERSION);
+
+        this.words = buffer.getInt(8);
+        this.dimension = buffer.getInt(12);
+        int tableSize = buffer.getInt(16);
+        this.tableMask = tableSize - 1;
+
+        this.offsetsStart = HEADER + tableSize * Integer.BYTES;
+        this.charsStart = offsetsStart + (words + 1) * Integer.BYTES;
+        this.matrixStart = align(charsStart + buffer.getInt(offsetsStart + words * Integer.BYTES) * Character.BYTES);
+    }
+
+    /****************************************************************
+     * @return The word vectors mapped from the binary file at @param path
+     */
+    public static WordVectors load(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Word vectors file is too large to be mapped: " + path);
+
+            // the mapping stays valid after the channel is closed
+            return new WordVectors(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /****************************************************************
+     * @return The row of the word in the matrix, or -1 if the word has no vector
+     */
+    public int row(String word) {
+
+        int i = slot(word.hashCode());
+        int row;
+        while ((row = buffer.getInt(HEADER + i * Integer.BYTES) - 1) >= 0) {
+            if (matches(row, word))
+                return row;
+            i = (i + 1) & tableMask;
+        }
+        return -1;
+    }
+
+    /****************************************************************
+     * @return The i-th value of the vector at @param row
+     */
+    public float get(int row, int i) {
+
+        return buffer.getFloat(matrixStart + (row * dimension + i) * Float.BYTES);
+    }
+
+    /****************************************************************
+     * @return A view of the vector at @param row, without copying it
+     */
+    public FloatBuffer vector(int row) {
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(matrixStart + row * dimension * Float.BYTES);
+        view.limit(view.position() + dimension * Float.BYTES);
+        return view.slice().asFloatBuffer();
+    }
+
+    /****************************************************************
+     * @return The inner product of the vectors at the two rows
+     */
+    public double dot(int first, int second) {
+
+        double result = 0.0;
+        for (int i = 0; i < dimension; i++) {
+            result += get(first, i) * get(second, i);
+        }
+        return result;
+    }
+
+    /****************************************************************
+     * @return The cosine similarity of the vectors at the two rows
+     */
+    public double similarity(int first, int second) {
+
+        return dot(first, second) / Math.sqrt(dot(first, first) * dot(second, second));
+    }
+
+    /****************************************************************
+     * @return The size of the vectors
+     */
+    public int dimension() {
+
+        return dimension;
+    }
+
+    /****************************************************************
+     * @return The number of words with vectors
+     */
+    public int size() {
+
+        return words;
+    }
+
+    /****************************************************************
+     * @return Whether the word at @param row is @param word
+     */
+    private boolean matches(int row, String word) {
+
+        int start = buffer.getInt(offsetsStart + row * Integer.BYTES);
+        int end = buffer.getInt(offsetsStart + (row + 1) * Integer.BYTES);
+        if (end - start != word.length())
+            return false;
+
+        for (int i = 0; i < word.length(); i++) {
+            if (buffer.getChar(charsStart + (start + i) * Character.BYTES) != word.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /****************************************************************
+     * @return The first slot of a word in the hash table
+     */
+    private int slot(int hash) {
+
+        return (hash ^ (hash >>> 16)) & tableMask;
+    }
+
+    /****************************************************************
+     * @return The offset rounded up to a multiple of 4
+     */
+    private static int align(int offset) {
+
+        return (offset + 3) & ~3;
+    }
+
+    /****************************************************************
+     * Converts word vectors from the GloVe text format (a word and its values per line,
+     * separated by spaces) at @param textPath into the binary format at @param binaryPath
+     */
+    public static void convert(Path textPath, Path binaryPath) throws IOException {
+
+        // first pass, the vocabulary and the dimension
+        List<String> vocabulary = new ArrayList<>();
+        int dimension = -1;
+        try (Stream<String> lines = Files.lines(textPath)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                int space = line.indexOf(' ');
+                vocabulary.add(line.substring(0, space));
+
+                int size = line.split(" ").length - 1;
+                if (dimension != -1 && dimension != size)
+                    throw new RuntimeException("Not consistent wordvec size");
+                dimension = size;
+            }
+        }
+
+        int tableSize = 2;
+        while (tableSize < vocabulary.size() * 2)
+            tableSize <<= 1;
+
+        // the hash table, the rows are shifted by one so that 0 marks a free slot,
+        // and a repeated word points to its last vector (as when loading the text into a map)
+        int[] table = new int[tableSize];
+        for (int row = 0; row < vocabulary.size(); row++) {
+            String word = vocabulary.get(row);
+            int h = word.hashCode();
+            int i = (h ^ (h >>> 16)) & (tableSize - 1);
+            while (table[i] != 0 && !vocabulary.get(table[i] - 1).equals(word))
+                i = (i + 1) & (tableSize - 1);
+            table[i] = row + 1;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(binaryPath)))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(vocabulary.size());
+            out.writeInt(dimension);
+            out.writeInt(tableSize);
+
+            for (int slot : table) {
+                out.writeInt(slot);
+            }
+
+            int offset = 0;
+            for (String word : vocabulary) {
+                out.writeInt(offset);
+                offset += word.length();
+            }
+            out.writeInt(offset);
+
+            for (String word : vocabulary) {
+                out.writeChars(word);
+            }
+
+            // padding so that the matrix is aligned
+            for (int i = out.size(); i < align(out.size()); i++) {
+                out.writeByte(0);
+            }
+
+            // second pass, the vectors
+            try (Stream<String> lines = Files.lines(textPath)) {
+                for (String line : (Iterable<String>) lines::iterator) {
+                    String[] vals = line.split(" ");
+                    for (int i = 1; i < vals.length; i++) {
+                        out.writeFloat(Float.parseFloat(vals[i]));
+                    }
+                }
+            }
+        }
+    }
+}
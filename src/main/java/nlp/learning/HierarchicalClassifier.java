@@ -0,0 +1,284 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.learning;
+
+import edu.stanford.nlp.util.Pair;
+import nlp.data.CsrDataSet;
+import nlp.data.Labels;
+import nlp.features.FeatureDictionary;
+import nlp.features.IndexedFeatureVector;
+import nlp.features.SparseFeatureVector;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A coarse to fine classifier over labels of the form "COARSE:fine" (as the UIUC question labels,
+ * e.g. NUM:date). A passive aggressive classifier picks the coarse label, and then only the fine
+ * labels under it are scored, each coarse label having its own classifier over its fine labels.
+ *
+ * When the best coarse label does not win by at least the margin, the fine labels of the second
+ * one are scored too. A fine label then scores the sum of the scores of its coarse and fine labels.
+ * A coarse label with a single fine label needs no fine classifier.
+ */
+public class HierarchicalClassifier implements Scorer, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String SEPARATOR = ":";
+
+    // the fine labels
+    private final Labels labels;
+
+    private final FeatureDictionary features;
+
+    // below this difference of the scores of the two best coarse labels, both are followed
+    private final double margin;
+
+    private final Labels coarseLabels;
+
+    private final PassiveAggressiveClassifier coarse;
+
+    // for each coarse label, the indices of its fine labels in labels, and in fineLabels
+    private final int[][] fineIndices;
+
+    private final Labels[] fineLabels;
+
+    // for each coarse label, the classifier of its fine labels, or null if it has only one
+    private final PassiveAggressiveClassifier[] fine;
+
+    /****************************************************************
+     * @return An untrained classifier of the @param labels over the @param features
+     * @param C The parameter of the passive aggressive classifiers, see PassiveAggressiveClassifier
+     * @param margin The difference of the two best coarse scores under which both are followed
+     */
+    public HierarchicalClassifier(double C, Labels labels, FeatureDictionary features, double margin) {
+
+        this.labels = labels;
+        this.features = features;
+        this.margin = margin;
+
+        // the labels are indexed twice so that they are named, see Labels.index
+        List<String> all = labels.all();
+        coarseLabels = new Labels();
+        for (String label : all) {
+            coarseLabels.index(coarse(label));
+            coarseLabels.index(coarse(label));
+        }
+
+        List<List<Integer>> indices = new ArrayList<>();
+        for (int c = 0; c < coarseLabels.size(); c++) {
+            indices.add(new ArrayList<>());
+        }
+        for (int l = 0; l < all.size(); l++) {
+            indices.get(coarseLabels.index(coarse(all.get(l)))).add(l);
+        }
+
+        coarse = new PassiveAggressiveClassifier(C, coarseLabels, features, false);
+        fineIndices = new int[coarseLabels.size()][];
+        fineLabels = new Labels[coarseLabels.size()];
+        fine = new PassiveAggressiveClassifier[coarseLabels.size()];
+        for (int c = 0; c < fine.length; c++) {
+            fineIndices[c] = indices.get(c).stream().mapToInt(Integer::intValue).toArray();
+            fineLabels[c] = new Labels();
+            for (int l : fineIndices[c]) {
+                fineLabels[c].index(all.get(l));
+                fineLabels[c].index(all.get(l));
+            }
+            if (fineIndices[c].length > 1)
+                fine[c] = new PassiveAggressiveClassifier(C, fineLabels[c], features, false);
+        }
+    }
+
+    /****************************************************************
+     * @return A classifier with the structure of @param other and the given classifiers
+     */
+    private HierarchicalClassifier(HierarchicalClassifier other, PassiveAggressiveClassifier coarse,
+                                   PassiveAggressiveClassifier[] fine) {
+
+        this.labels = other.labels;
+        this.features = other.features;
+        this.margin = other.margin;
+        this.coarseLabels = other.coarseLabels;
+        this.coarse = coarse;
+        this.fineIndices = other.fineIndices;
+        this.fineLabels = other.fineLabels;
+        this.fine = fine;
+    }
+
+    /****************************************************************
+     * @return The coarse part of the @param label
+     */
+    private static String coarse(String label) {
+
+        int separator = label.indexOf(SEPARATOR);
+        return separator < 0 ? label : label.substring(0, separator);
+    }
+
+    /****************************************************************
+     * Perform one epoch over the @param train set for the coarse classifier and for each
+     * fine one over the data points of its coarse label, see PassiveAggressiveClassifier.train
+     * @return the cumulative loss from all the classifiers
+     */
+    public double train(CsrDataSet train, int threads, Random random) {
+
+        int[] coarseMap = new int[labels.size()];
+        for (int c = 0; c < fineIndices.length; c++) {
+            for (int l : fineIndices[c]) {
+                coarseMap[l] = c;
+            }
+        }
+        double loss = coarse.train(train.relabel(coarseLabels, coarseMap), threads, random);
+
+        for (int c = 0; c < fine.length; c++) {
+            if (fine[c] == null)
+                continue;
+
+            int[] fineMap = new int[labels.size()];
+            Arrays.fill(fineMap, -1);
+            for (int f = 0; f < fineIndices[c].length; f++) {
+                fineMap[fineIndices[c][f]] = f;
+            }
+            loss += fine[c].train(train.relabel(fineLabels[c], fineMap), threads, random);
+        }
+        return loss;
+    }
+
+    /****************************************************************
+     * @return a classifier with the averaged weights of all the classifiers, see
+     *         PassiveAggressiveClassifier.averaged
+     */
+    public HierarchicalClassifier averaged() {
+
+        PassiveAggressiveClassifier[] averaged = new PassiveAggressiveClassifier[fine.length];
+        for (int c = 0; c < fine.length; c++) {
+            averaged[c] = fine[c] == null ? null : fine[c].averaged();
+        }
+        return new HierarchicalClassifier(this, coarse.averaged(), averaged);
+    }
+
+    /****************************************************************
+     * Run over the compressed test set and classify all the data points
+     * @return accuracy over the test set
+     */
+    public double test(CsrDataSet test) {
+
+        double score = 0.0;
+        for (int i = 0; i < test.size(); i++) {
+            if (top(test.vector(i), 1).label(0) == test.label(i))
+                score += 1.0;
+        }
+        return score / test.size();
+    }
+
+    /****************************************************************
+     * @return a list of all the fine labels(ranking), each scored by its coarse and fine labels
+     */
+    @Override
+    public List<Pair<String, Double>> score(SparseFeatureVector dataPoint) {
+
+        features.checkNamed();
+
+        // features unknown to the model have no weights
+        IndexedFeatureVector indexed = new IndexedFeatureVector(dataPoint.getFeatures().size());
+        dataPoint.getFeatures().forEach((k, v) -> indexed.add(features.lookup(k), v));
+        return score(features.fold(indexed));
+    }
+
+    /****************************************************************
+     * @return a list of all the fine labels(ranking), each scored by its coarse and fine labels,
+     *         for a datapoint indexed with the features of the model
+     */
+    @Override
+    public List<Pair<String, Double>> score(IndexedFeatureVector dataPoint) {
+
+        List<Pair<String, Double>> results = new ArrayList<>(labels.size());
+        for (Pair<String, Double> c : coarse.score(dataPoint)) {
+            int coarseLabel = coarseLabels.index(c.first);
+            if (fine[coarseLabel] == null) {
+                results.add(new Pair<>(labels.label(fineIndices[coarseLabel][0]), c.second));
+                continue;
+            }
+            for (Pair<String, Double> f : fine[coarseLabel].score(dataPoint)) {
+                results.add(new Pair<>(labels.label(fineIndices[coarseLabel][fineLabels[coarseLabel].index(f.first)]),
+                        c.second + f.second));
+            }
+        }
+
+        results.sort(new Pair.BySecondReversePairComparator<>());
+        return results;
+    }
+
+    /****************************************************************
+     * @return the (at most) @param k best fine labels under the best coarse label, or under the
+     *         two best ones when their scores are closer than the margin
+     */
+    @Override
+    public TopLabels top(IndexedFeatureVector dataPoint, int k) {
+
+        TopLabels coarseTop = coarse.top(dataPoint, 2);
+        int followed = coarseTop.size() > 1 && coarseTop.score(0) - coarseTop.score(1) < margin ? 2 : 1;
+
+        TopLabels top = TopLabels.empty(labels, k);
+        for (int r = 0; r < followed; r++) {
+            int c = coarseTop.label(r);
+            if (fine[c] == null) {
+                top.offer(fineIndices[c][0], coarseTop.score(r));
+                continue;
+            }
+
+            TopLabels fineTop = fine[c].top(dataPoint, k);
+            for (int f = 0; f < fineTop.size(); f++) {
+                top.offer(fineIndices[c][fineTop.label(f)], coarseTop.score(r) + fineTop.score(f));
+            }
+        }
+        return top;
+    }
+
+    /****************************************************************
+     * @return the ids of the features used by the model
+     */
+    @Override
+    public FeatureDictionary features() {
+
+        return features;
+    }
+
+    /****************************************************************
+     * Saves the current model into the @param outPath
+     */
+    public void save(Path outPath) throws IOException {
+
+        FileOutputStream out = new FileOutputStream(outPath.toFile());
+        ObjectOutputStream obj = new ObjectOutputStream(out);
+        obj.writeObject(this);
+        obj.close();
+    }
+
+    /****************************************************************
+     * @return an instance of the classifier saved earlier
+     */
+    public static HierarchicalClassifier load(Path modelPath) throws IOException, ClassNotFoundException {
+
+        FileInputStream in = new FileInputStream(modelPath.toFile());
+        ObjectInputStream obj = new ObjectInputStream(in);
+        HierarchicalClassifier classifier = (HierarchicalClassifier) obj.readObject();
+        obj.close();
+
+        // a loaded model only scores, unless it is explicitly trained further
+        classifier.features.freeze();
+        return classifier;
+    }
+}
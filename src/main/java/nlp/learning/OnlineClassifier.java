@@ -0,0 +1,200 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.learning;
+
+import edu.stanford.nlp.util.Pair;
+import nlp.features.FeatureDictionary;
+import nlp.features.IndexedFeatureVector;
+import nlp.features.SparseFeatureVector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A classifier which keeps learning while it is serving, from the corrected labels of questions
+ * (e.g. answer feedback), by steps of the passive aggressive algorithm.
+ *
+ * The steps are made on a private copy of the model, and the scoring is done by an immutable
+ * compacted snapshot of it. After every so many updates a new snapshot is published by swapping
+ * an atomic reference (copy on write), so the scoring never takes a lock nor sees weights in the
+ * middle of an update, and each snapshot has its version. The updates themselves are serialized.
+ *
+ * The features of the model are frozen, so only the features the model already knows are
+ * learnt, and only the labels it already knows.
+ */
+public class OnlineClassifier implements Scorer {
+
+    private final PassiveAggressiveClassifier learner;
+
+    private final int publishEvery;
+
+    private final AtomicReference<WeightMatrix> snapshot;
+
+    private final AtomicLong version = new AtomicLong();
+
+    // the updates since the last snapshot, guarded by this
+    private int pending = 0;
+
+    private ScheduledExecutorService persister;
+
+    /****************************************************************
+     * @return a classifier serving the @param model and learning on a copy of it,
+     *         publishing the updates after every @param publishEvery of them
+     */
+    public OnlineClassifier(PassiveAggressiveClassifier model, int publishEvery) {
+
+        model.features().freeze();
+        this.learner = model.copy();
+        this.publishEvery = publishEvery;
+        this.snapshot = new AtomicReference<>(learner.compact());
+    }
+
+    /****************************************************************
+     * Makes a step towards the @param label for the @param dataPoint, indexed with features()
+     * @return false if the label is not known to the model, so nothing was learnt
+     */
+    public synchronized boolean update(IndexedFeatureVector dataPoint, String label) {
+
+        int y = learner.labels().lookup(label);
+        if (dataPoint == null || y < 0)
+            return false;
+
+        learner.update(dataPoint, y);
+        if (++pending >= publishEvery)
+            publish();
+        return true;
+    }
+
+    /****************************************************************
+     * Publishes the current weights as a new snapshot, which the next scorings use
+     */
+    public synchronized void publish() {
+
+        snapshot.set(learner.compact());
+        version.incrementAndGet();
+        pending = 0;
+    }
+
+    /****************************************************************
+     * @return The number of snapshots published after the first one
+     */
+    public long version() {
+
+        return version.get();
+    }
+
+    /****************************************************************
+     * @return The current snapshot, which does not change anymore
+     */
+    public WeightMatrix snapshot() {
+
+        return snapshot.get();
+    }
+
+    /****************************************************************
+     * Publishes the pending updates and saves the model into @param modelPath (serialized,
+     * to be trained further) and its snapshot into @param binaryPath. The files are written
+     * aside first, so that a concurrent reader never sees a partial file.
+     */
+    public synchronized void save(Path modelPath, Path binaryPath) throws IOException {
+
+        if (pending > 0)
+            publish();
+
+        Path temp = Files.createTempFile(modelPath.toAbsolutePath().getParent(), modelPath.getFileName().toString(), ".tmp");
+        learner.save(temp);
+        Files.move(temp, modelPath, StandardCopyOption.REPLACE_EXISTING);
+
+        temp = Files.createTempFile(binaryPath.toAbsolutePath().getParent(), binaryPath.getFileName().toString(), ".tmp");
+        snapshot.get().save(temp);
+        Files.move(temp, binaryPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /****************************************************************
+     * Saves the model as by save() every @param period, in the background, until close()
+     */
+    public synchronized void persistEvery(Path modelPath, Path binaryPath, long period, TimeUnit unit) {
+
+        if (persister != null)
+            throw new IllegalStateException("The model is already persisted");
+
+        persister = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "online-classifier-persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+        persister.scheduleWithFixedDelay(() -> {
+            try {
+                save(modelPath, binaryPath);
+            }
+            catch (IOException e) {
+                System.out.println("Failed to save the online model to " + modelPath);
+                e.printStackTrace();
+            }
+        }, period, period, unit);
+    }
+
+    /****************************************************************
+     * Stops the periodic persistence, if any
+     */
+    public synchronized void close() {
+
+        if (persister != null) {
+            persister.shutdown();
+            persister = null;
+        }
+    }
+
+    /****************************************************************
+     * @return a list of labels(ranking) scored by the current snapshot
+     */
+    @Override
+    public List<Pair<String, Double>> score(SparseFeatureVector dataPoint) {
+
+        return snapshot.get().score(dataPoint);
+    }
+
+    /****************************************************************
+     * @return a list of labels(ranking) scored by the current snapshot,
+     *         for a datapoint indexed with the features of the model
+     */
+    @Override
+    public List<Pair<String, Double>> score(IndexedFeatureVector dataPoint) {
+
+        return snapshot.get().score(dataPoint);
+    }
+
+    /****************************************************************
+     * @return the @param k best labels by the current snapshot
+     */
+    @Override
+    public TopLabels top(IndexedFeatureVector dataPoint, int k) {
+
+        return snapshot.get().top(dataPoint, k);
+    }
+
+    /****************************************************************
+     * @return the ids of the features used by the model
+     */
+    @Override
+    public FeatureDictionary features() {
+
+        return learner.features();
+    }
+}
@@ -11,14 +11,24 @@
 package nlp.learning;
 
 import edu.stanford.nlp.util.Pair;
+import nlp.data.CsrDataSet;
 import nlp.data.DataSet;
 import nlp.data.Labels;
+import nlp.features.FeatureDictionary;
+import nlp.features.IndexedFeatureVector;
 import nlp.features.SparseFeatureVector;
 
 import java.io.*;
 import java.nio.file.Path;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -29,7 +39,15 @@ import java.util.stream.Collectors;
  */
 public class PassiveAggressiveClassifier implements Scorer, Serializable {
 
-    public static final int serialVersionUID = 1;
+    public static final long serialVersionUID = 1;
+
+    // the threads of the parallel epochs, shared by all the classifiers and kept from one
+    // epoch to the next, which do not keep the JVM alive
+    private static final ExecutorService TRAINERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "passive-aggressive-trainer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private final Labels labels;
 
@@ -37,7 +55,20 @@ public class PassiveAggressiveClassifier implements Scorer, Serializable {
 
     private double C;
 
+    // the ids of the features used by the weights
+    private FeatureDictionary features;
+
     // for each label
+    private IndexedFeatureVector[] weights;
+
+    // for the averaged weights, the updates of the training so far, each one weighted by the
+    // number of steps before it, so that the average is weights - updates / steps
+    private transient IndexedFeatureVector[] updates;
+
+    private transient long steps;
+
+    // the named weights of models saved before the features were indexed,
+    // only set while such a model is being loaded
     private SparseFeatureVector[] w;
 
     /****************************************************************
@@ -50,23 +81,44 @@ public class PassiveAggressiveClassifier implements Scorer, Serializable {
      */
     public PassiveAggressiveClassifier(double C, Labels labels, boolean lookAtSecondWhenTesting) {
 
+        this(C, labels, new FeatureDictionary(), lookAtSecondWhenTesting);
+    }
+
+    /****************************************************************
+     * @return An instance of the classifier over the features indexed by @param features
+     */
+    public PassiveAggressiveClassifier(double C, Labels labels, FeatureDictionary features, boolean lookAtSecondWhenTesting) {
+
         this.C = C;
         this.labels = labels;
+        this.features = features;
         this.lookAtSecondWhenTesting = lookAtSecondWhenTesting;
 
         // initialization of all the feature weights (the weights are represented by sparse feature vectors)
-        w = new SparseFeatureVector[labels.size()];
-        for (int i = 0; i < w.length; i++) {
-            w[i] = new SparseFeatureVector();
+        weights = new IndexedFeatureVector[labels.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = new IndexedFeatureVector();
         }
     }
 
     /****************************************************************
-     * @return the loss given the r and s indices and the data point at hand
+     * @return the inner product of the weights @param w with the i-th data point
      */
-    private double loss(int r, int s, SparseFeatureVector x) {
+    private static double dot(IndexedFeatureVector w, CsrDataSet data, int i) {
 
-        double margin = w[r].dot(x) - w[s].dot(x);
+        double result = 0.0;
+        for (int k = data.start(i); k < data.end(i); k++) {
+            result += w.value(data.id(k)) * data.value(k);
+        }
+        return result;
+    }
+
+    /****************************************************************
+     * @return the loss given the scores of the r and s labels
+     */
+    private static double loss(double[] scores, int r, int s) {
+
+        double margin = scores[r] - scores[s];
         if (margin >= 1.0)
             return 0.0;
 
@@ -74,53 +126,325 @@ public class PassiveAggressiveClassifier implements Scorer, Serializable {
     }
 
     /****************************************************************
-     * @return index S computed from the data point at hand and the label
+     * @return index S computed from the scores of the data point at hand and the label
      */
-    private int getS(SparseFeatureVector x, int y) {
-
-        return labels.labels().filter(l -> l != y).
-                mapToObj(l -> new Pair<>(l, w[l].dot(x))).
-                max(Comparator.comparingDouble(Pair::second)).get().first;
+    private static int getS(double[] scores, int y) {
+
+        int s = -1;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int l = 0; l < scores.length; l++) {
+            if (l == y)
+                continue;
+            if (s == -1 || scores[l] > best) {
+                s = l;
+                best = scores[l];
+            }
+        }
+        return s;
     }
 
-    private double getTau(SparseFeatureVector x, int y, double l) {
+    private double getTau(CsrDataSet data, int i, double l) {
 
-        double t = l / (2 * x.dot(x));
+        double norm = 0.0;
+        for (int k = data.start(i); k < data.end(i); k++) {
+            norm += data.value(k) * data.value(k);
+        }
+        double t = l / (2 * norm);
 
         // this is according to PA-I implementation (see page 555 (Crammer 2006))
         return Math.min(C, t);
     }
 
     /****************************************************************
-     * Make one step for the datapoint x
+     * Make one step for the i-th datapoint of @param data on the given @param weights,
+     * recording the update for averaging if @param updates are given
      * @return the loss
      */
-    private double step(SparseFeatureVector x, int y) {
+    private double step(IndexedFeatureVector[] weights, IndexedFeatureVector[] updates, CsrDataSet data, int i) {
+
+        double[] scores = new double[weights.length];
+        for (int l = 0; l < scores.length; l++) {
+            scores[l] = dot(weights[l], data, i);
+        }
 
         // r = y (as we are in single label case)
-        int r = y;
-        int s = getS(x, y);
+        int r = data.label(i);
+        int s = getS(scores, r);
 
-        double l = loss(y, s, x);
-        double tau = getTau(x, y, l);
+        double l = loss(scores, r, s);
+        if (l == 0.0)
+            return l;
 
-        SparseFeatureVector rUpdate = x.mult(tau);
-        SparseFeatureVector sUpdate = x.mult(-tau);
+        double tau = getTau(data, i, l);
 
         // updating in two places r and s
-        w[r].add(rUpdate);
-        w[s].add(sUpdate);
+        for (int k = data.start(i); k < data.end(i); k++) {
+            double update = tau * data.value(k);
+            weights[r].add(data.id(k), update);
+            weights[s].add(data.id(k), -update);
+
+            if (updates != null) {
+                updates[r].add(data.id(k), update * steps);
+                updates[s].add(data.id(k), -update * steps);
+            }
+        }
+
+        return l;
+    }
+
+    /****************************************************************
+     * Make one online step for the @param dataPoint, indexed with the features of the model,
+     * of the label @param y, as in training but without recording it for averaging
+     * @return the loss
+     */
+    public double update(IndexedFeatureVector dataPoint, int y) {
+
+        double[] scores = new double[weights.length];
+        for (int l = 0; l < scores.length; l++) {
+            scores[l] = weights[l].dot(dataPoint);
+        }
+
+        int s = getS(scores, y);
+        double l = loss(scores, y, s);
+        if (l == 0.0)
+            return l;
 
+        // PA-I, as getTau
+        double tau = Math.min(C, l / (2 * dataPoint.dot(dataPoint)));
+        weights[y].add(dataPoint, tau);
+        weights[s].add(dataPoint, -tau);
         return l;
     }
 
     /****************************************************************
      * Perform a step for each data point in the @param train set.
      * @return the cumulative loss from all the datapoints
+     * @deprecated the data set is compressed again on each call, train on a CsrDataSet
+     *             built once instead
      */
+    @Deprecated
     public double train(DataSet train) {
 
-        return train.dataPoints.stream().mapToDouble(d -> step(d.second, d.first)).sum();
+        return train(CsrDataSet.of(train, features));
+    }
+
+    /****************************************************************
+     * Perform a step for each data point in the compressed @param train set.
+     * @return the cumulative loss from all the datapoints
+     */
+    public double train(CsrDataSet train) {
+
+        checkFeatures(train);
+        startAveraging();
+
+        double loss = 0.0;
+        for (int i = 0; i < train.size(); i++) {
+            loss += step(weights, updates, train, i);
+            steps++;
+        }
+        return loss;
+    }
+
+    /****************************************************************
+     * Perform one epoch of iterative parameter mixing over the @param train set,
+     * see train(CsrDataSet, int, Random)
+     * @return the cumulative loss from all the datapoints
+     * @deprecated the data set is compressed again on each call, train on a CsrDataSet
+     *             built once instead
+     */
+    @Deprecated
+    public double train(DataSet train, int threads, Random random) {
+
+        return train(CsrDataSet.of(train, features), threads, random);
+    }
+
+    /****************************************************************
+     * Perform one epoch of iterative parameter mixing over the @param train set:
+     * the data points are shuffled by @param random and split into a shard per thread,
+     * each shard is trained on its own copy of the weights and the copies are then averaged.
+     * The result only depends on the seed of the random and not on the scheduling of the threads.
+     * @return the cumulative loss from all the datapoints
+     */
+    public double train(CsrDataSet train, int threads, Random random) {
+
+        if (threads <= 1)
+            return train(train);
+
+        checkFeatures(train);
+        CsrDataSet dataPoints = train.shuffle(random);
+
+        try {
+            List<Future<IndexedFeatureVector[]>> shards = new ArrayList<>();
+            double[] losses = new double[threads];
+            for (int t = 0; t < threads; t++) {
+                final int shard = t;
+                CsrDataSet part = dataPoints.subset(shard * dataPoints.size() / threads, (shard + 1) * dataPoints.size() / threads);
+
+                shards.add(TRAINERS.submit(() -> {
+                    IndexedFeatureVector[] copy = new IndexedFeatureVector[weights.length];
+                    for (int i = 0; i < copy.length; i++) {
+                        copy[i] = weights[i].mult(1.0);
+                    }
+                    for (int i = 0; i < part.size(); i++) {
+                        losses[shard] += step(copy, null, part, i);
+                    }
+                    return copy;
+                }));
+            }
+
+            // mixing, in the order of the shards so that the sums are reproducible
+            IndexedFeatureVector[] mixed = new IndexedFeatureVector[weights.length];
+            for (int i = 0; i < mixed.length; i++) {
+                mixed[i] = new IndexedFeatureVector(weights[i].size());
+            }
+            for (Future<IndexedFeatureVector[]> shard : shards) {
+                IndexedFeatureVector[] copy = shard.get();
+                for (int i = 0; i < mixed.length; i++) {
+                    mixed[i].add(copy[i], 1.0 / threads);
+                }
+            }
+
+            // the mixed weights count as one update for averaging, followed by an epoch of steps
+            startAveraging();
+            for (int i = 0; i < mixed.length; i++) {
+                updates[i].add(mixed[i], steps);
+                updates[i].add(weights[i], -steps);
+            }
+            steps += dataPoints.size();
+            weights = mixed;
+
+            return Arrays.stream(losses).sum();
+        }
+        catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Parallel training failed", e);
+        }
+    }
+
+    /****************************************************************
+     * Checks that the @param train set is indexed by the features of the model
+     */
+    private void checkFeatures(CsrDataSet train) {
+
+        if (train.features != features)
+            throw new IllegalStateException("The data points were indexed with another dictionary than the model");
+    }
+
+    /****************************************************************
+     * Starts recording the updates for averaging, if not yet started
+     */
+    private void startAveraging() {
+
+        if (updates != null)
+            return;
+
+        updates = new IndexedFeatureVector[weights.length];
+        for (int i = 0; i < updates.length; i++) {
+            updates[i] = new IndexedFeatureVector();
+        }
+        steps = 1;
+    }
+
+    /****************************************************************
+     * @return a classifier with the average of the weights over all the training steps
+     *         so far (averaged PA), which is usually more stable than the last weights
+     */
+    public PassiveAggressiveClassifier averaged() {
+
+        PassiveAggressiveClassifier averaged = new PassiveAggressiveClassifier(C, labels, features, lookAtSecondWhenTesting);
+        for (int i = 0; i < weights.length; i++) {
+            averaged.weights[i] = weights[i].mult(1.0);
+            if (updates != null)
+                averaged.weights[i].add(updates[i], -1.0 / steps);
+        }
+        return averaged;
+    }
+
+    /****************************************************************
+     * @return a classifier with a copy of the current weights, which can be trained on its own
+     */
+    public PassiveAggressiveClassifier copy() {
+
+        PassiveAggressiveClassifier copy = new PassiveAggressiveClassifier(C, labels, features, lookAtSecondWhenTesting);
+        for (int i = 0; i < weights.length; i++) {
+            copy.weights[i] = weights[i].mult(1.0);
+        }
+        return copy;
+    }
+
+    /****************************************************************
+     * @return a classifier with a copy of the current weights, to continue the training (warm start)
+     *         with @param C over @param labels, which extend the labels of this classifier: the known
+     *         labels keep their indices and weights, and the new ones start without weights
+     */
+    public PassiveAggressiveClassifier warmStart(double C, Labels labels) {
+
+        PassiveAggressiveClassifier warm = new PassiveAggressiveClassifier(C, labels, features, lookAtSecondWhenTesting);
+        for (int i = 0; i < weights.length; i++) {
+            warm.weights[i] = weights[i].mult(1.0);
+        }
+        return warm;
+    }
+
+    /****************************************************************
+     * @return a classifier with the same weights, without the weights whose magnitude
+     *         is below @param threshold (magnitude pruning), which are mostly noise
+     */
+    public PassiveAggressiveClassifier pruned(double threshold) {
+
+        PassiveAggressiveClassifier pruned = new PassiveAggressiveClassifier(C, labels, features, lookAtSecondWhenTesting);
+        for (int i = 0; i < weights.length; i++) {
+            IndexedFeatureVector kept = pruned.weights[i];
+            weights[i].forEach((k, v) -> {
+                if (Math.abs(v) >= threshold)
+                    kept.add(k, v);
+            });
+        }
+        return pruned;
+    }
+
+    /****************************************************************
+     * @return a classifier with the same weights over a dictionary of only the features with
+     *         weights (see FeatureDictionary.retain), so that the saved model does not carry all
+     *         the features seen while training. Its data points have to be indexed with features()
+     */
+    public PassiveAggressiveClassifier trimmed() {
+
+        BitSet used = new BitSet();
+        for (IndexedFeatureVector w : weights) {
+            w.forEach((k, v) -> {
+                if (v != 0.0)
+                    used.set(k);
+            });
+        }
+
+        FeatureDictionary retained = features.retain(used);
+        if (retained == features)
+            return pruned(0.0);
+
+        PassiveAggressiveClassifier trimmed = new PassiveAggressiveClassifier(C, labels, retained, lookAtSecondWhenTesting);
+        for (int i = 0; i < weights.length; i++) {
+            IndexedFeatureVector kept = trimmed.weights[i];
+            weights[i].forEach((k, v) -> {
+                if (v != 0.0)
+                    kept.add(retained.lookup(features.name(k)), v);
+            });
+        }
+        return trimmed;
+    }
+
+    /****************************************************************
+     * @return The number of non zero weights, over all the labels
+     */
+    public int size() {
+
+        int[] size = {0};
+        for (IndexedFeatureVector w : weights) {
+            w.forEach((k, v) -> {
+                if (v != 0.0)
+                    size[0]++;
+            });
+        }
+        return size[0];
     }
 
     /****************************************************************
@@ -129,18 +453,40 @@ public class PassiveAggressiveClassifier implements Scorer, Serializable {
      */
     public double test(DataSet test) {
 
-        double score = test.dataPoints.stream().mapToDouble(d -> {
-            List<Pair<String, Double>> prediction = score(d.second);
-            double tempScore = labels.index(prediction.get(0).first) == d.first ? 1.0 : 0.0;
+        List<Pair<Integer, IndexedFeatureVector>> dataPoints = test.indexed(features);
+        double score = dataPoints.stream().mapToDouble(d -> {
+            TopLabels prediction = top(d.second, lookAtSecondWhenTesting ? 2 : 1);
+            double tempScore = prediction.label(0) == d.first ? 1.0 : 0.0;
 
             // if the configuration is to look at the second best candidate
             if (tempScore < 1.0 && lookAtSecondWhenTesting)
-                tempScore = labels.index(prediction.get(1).first) == d.first ? 1.0 : 0.0;
+                tempScore = prediction.label(1) == d.first ? 1.0 : 0.0;
 
             return tempScore;
         }).sum();
 
-        return score / test.dataPoints.size();
+        return score / dataPoints.size();
+    }
+
+    /****************************************************************
+     * Run over the compressed test set and classify all the data points
+     * @return accuracy over the test set
+     */
+    public double test(CsrDataSet test) {
+
+        double score = 0.0;
+        for (int i = 0; i < test.size(); i++) {
+            double[] scores = new double[weights.length];
+            for (int l = 0; l < scores.length; l++) {
+                scores[l] = dot(weights[l], test, i);
+            }
+
+            TopLabels prediction = TopLabels.select(labels, scores, lookAtSecondWhenTesting ? 2 : 1);
+            if (prediction.label(0) == test.label(i) || (lookAtSecondWhenTesting && prediction.label(1) == test.label(i)))
+                score += 1.0;
+        }
+
+        return score / test.size();
     }
 
     /****************************************************************
@@ -149,13 +495,64 @@ public class PassiveAggressiveClassifier implements Scorer, Serializable {
      */
     public List<Pair<String, Double>> score(SparseFeatureVector dataPoint) {
 
+        features.checkNamed();
+
+        // features unknown to the model have no weights
+        IndexedFeatureVector indexed = new IndexedFeatureVector(dataPoint.getFeatures().size());
+        dataPoint.getFeatures().forEach((k, v) -> indexed.add(features.lookup(k), v));
+        return score(features.fold(indexed));
+    }
+
+    /****************************************************************
+     * @return a list of labels(ranking) scored by the current weights in the model,
+     *         for a datapoint indexed with the features of the model
+     */
+    public List<Pair<String, Double>> score(IndexedFeatureVector dataPoint) {
+
         List<Pair<String, Double>> results = labels.labels().mapToObj(l ->
-                new Pair<>(labels.label(l), w[l].dot(dataPoint))).collect(Collectors.toList());
+                new Pair<>(labels.label(l), weights[l].dot(dataPoint))).collect(Collectors.toList());
 
         results.sort(new Pair.BySecondReversePairComparator<>());
         return results;
     }
 
+    /****************************************************************
+     * @return the @param k best labels for a datapoint indexed with the features of the model
+     */
+    public TopLabels top(IndexedFeatureVector dataPoint, int k) {
+
+        double[] scores = new double[weights.length];
+        for (int l = 0; l < scores.length; l++) {
+            scores[l] = weights[l].dot(dataPoint);
+        }
+        return TopLabels.select(labels, scores, k);
+    }
+
+    /****************************************************************
+     * @return the ids of the features used by the model
+     */
+    public FeatureDictionary features() {
+
+        return features;
+    }
+
+    /****************************************************************
+     * @return the labels of the model
+     */
+    public Labels labels() {
+
+        return labels;
+    }
+
+    /****************************************************************
+     * @return the current weights compacted into a feature major matrix,
+     *         which scores all the labels in one pass over the features
+     */
+    public WeightMatrix compact() {
+
+        return new WeightMatrix(labels, features, weights);
+    }
+
     /****************************************************************
      * Saves the current model into the @param outPath
      */
@@ -174,6 +571,28 @@ public class PassiveAggressiveClassifier implements Scorer, Serializable {
 
         FileInputStream in = new FileInputStream(modelPath.toFile());
         ObjectInputStream obj = new ObjectInputStream(in);
-        return (PassiveAggressiveClassifier) obj.readObject();
+        PassiveAggressiveClassifier classifier = (PassiveAggressiveClassifier) obj.readObject();
+        obj.close();
+
+        // a loaded model only scores, unless it is explicitly trained further
+        classifier.features.freeze();
+        return classifier;
+    }
+
+    /****************************************************************
+     * Converts the named weights of an old model into indexed ones
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+
+        if (w != null) {
+            features = new FeatureDictionary();
+            weights = new IndexedFeatureVector[w.length];
+            for (int i = 0; i < w.length; i++) {
+                weights[i] = w[i].toIndexed(features);
+            }
+            w = null;
+        }
     }
 }
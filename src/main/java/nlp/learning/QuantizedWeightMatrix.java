@@ -0,0 +1,168 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.learning;
+
+import edu.stanford.nlp.util.Pair;
+import nlp.data.Labels;
+import nlp.features.FeatureDictionary;
+import nlp.features.IndexedFeatureVector;
+import nlp.features.SparseFeatureVector;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A weight matrix with the weights quantized into bytes, with a scale per label:
+ * a weight of a label is its byte times the scale of the label, where the scale maps
+ * the largest absolute weight of the label to 127. The matrix takes a quarter of the
+ * memory of the float one.
+ *
+ * The layout is feature major as in WeightMatrix, and the scales are only applied once
+ * per label, after the bytes are accumulated over the features of a data point.
+ */
+public class QuantizedWeightMatrix implements Scorer {
+
+    private final Labels labels;
+
+    private final FeatureDictionary features;
+
+    private final int numLabels;
+
+    private final int numRows;
+
+    // for each feature id, its row or -1 when it has no weights
+    private final IntBuffer rows;
+
+    // numRows x numLabels
+    private final byte[] weights;
+
+    // for each label
+    private final float[] scales;
+
+    /****************************************************************
+     * @return The quantized matrix of @param numRows x @param numLabels weights
+     *         given in a feature major buffer, with the @param rows of the features
+     */
+    QuantizedWeightMatrix(Labels labels, FeatureDictionary features, int numLabels, int numRows, IntBuffer rows, FloatBuffer source) {
+
+        this.labels = labels;
+        this.features = features;
+        this.numLabels = numLabels;
+        this.numRows = numRows;
+        this.rows = rows;
+        this.weights = new byte[numRows * numLabels];
+        this.scales = new float[numLabels];
+
+        for (int f = 0; f < numRows; f++) {
+            for (int l = 0; l < numLabels; l++) {
+                scales[l] = Math.max(scales[l], Math.abs(source.get(f * numLabels + l)));
+            }
+        }
+        for (int l = 0; l < numLabels; l++) {
+            scales[l] /= Byte.MAX_VALUE;
+        }
+
+        for (int f = 0; f < numRows; f++) {
+            for (int l = 0; l < numLabels; l++) {
+                if (scales[l] > 0)
+                    weights[f * numLabels + l] = (byte) Math.round(source.get(f * numLabels + l) / scales[l]);
+            }
+        }
+    }
+
+    /****************************************************************
+     * @return The scores of all the labels, indexed by the labels indices
+     */
+    public double[] scores(IndexedFeatureVector dataPoint) {
+
+        double[] scores = new double[numLabels];
+        dataPoint.forEach((k, v) -> {
+            int row = k < rows.limit() ? rows.get(k) : -1;
+            if (row < 0)
+                return;
+            int start = row * numLabels;
+            for (int l = 0; l < numLabels; l++) {
+                scores[l] += weights[start + l] * v;
+            }
+        });
+
+        for (int l = 0; l < numLabels; l++) {
+            scores[l] *= scales[l];
+        }
+        return scores;
+    }
+
+    /****************************************************************
+     * @return a list of labels(ranking) scored by the weights
+     */
+    @Override
+    public List<Pair<String, Double>> score(SparseFeatureVector dataPoint) {
+
+        features.checkNamed();
+        IndexedFeatureVector indexed = new IndexedFeatureVector(dataPoint.getFeatures().size());
+        dataPoint.getFeatures().forEach((k, v) -> indexed.add(features.lookup(k), v));
+        return score(features.fold(indexed));
+    }
+
+    /****************************************************************
+     * @return a list of labels(ranking) scored by the weights, for a datapoint
+     *         indexed with the features of the model
+     */
+    @Override
+    public List<Pair<String, Double>> score(IndexedFeatureVector dataPoint) {
+
+        double[] scores = scores(dataPoint);
+
+        List<Pair<String, Double>> results = new ArrayList<>(numLabels);
+        for (int l = 0; l < numLabels; l++) {
+            results.add(new Pair<>(labels.label(l), scores[l]));
+        }
+
+        results.sort(new Pair.BySecondReversePairComparator<>());
+        return results;
+    }
+
+    /****************************************************************
+     * @return the @param k best labels for a datapoint indexed with the features of the model
+     */
+    @Override
+    public TopLabels top(IndexedFeatureVector dataPoint, int k) {
+
+        return TopLabels.select(labels, scores(dataPoint), k);
+    }
+
+    /****************************************************************
+     * @return the ids of the features used by the model
+     */
+    @Override
+    public FeatureDictionary features() {
+
+        return features;
+    }
+
+    /****************************************************************
+     * @return the labels of the model
+     */
+    public Labels labels() {
+
+        return labels;
+    }
+
+    /****************************************************************
+     * @return The number of bytes taken by the weights and the scales
+     */
+    public long weightsSize() {
+
+        return (long) rows.limit() * Integer.BYTES + weights.length + scales.length * Float.BYTES;
+    }
+}
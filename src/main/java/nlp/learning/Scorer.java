@@ -12,6 +12,8 @@ package nlp.learning;
 
 
 import edu.stanford.nlp.util.Pair;
+import nlp.features.FeatureDictionary;
+import nlp.features.IndexedFeatureVector;
 import nlp.features.SparseFeatureVector;
 
 import java.util.List;
@@ -23,4 +25,20 @@ import java.util.List;
 public interface Scorer {
 
     List<Pair<String, Double>> score(SparseFeatureVector dataPoint);
+
+    /****************************************************************
+     * @return the same as the named scoring, for a datapoint indexed with features()
+     */
+    List<Pair<String, Double>> score(IndexedFeatureVector dataPoint);
+
+    /****************************************************************
+     * @return the @param k best labels for a datapoint indexed with features(), without
+     *         building and sorting the list of all the labels as score() does
+     */
+    TopLabels top(IndexedFeatureVector dataPoint, int k);
+
+    /****************************************************************
+     * @return the feature ids which the indexed datapoints have to be built with
+     */
+    FeatureDictionary features();
 }
@@ -0,0 +1,71 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.learning;
+
+import nlp.features.FeatureConsumer;
+
+import java.util.Arrays;
+
+/**
+ * Scores the features as they are emitted by a featurizer, accumulating the scores of all the
+ * labels of a weight matrix straight into an array, so that no feature vector is built for the
+ * scoring. The scores are the ones WeightMatrix.scores gives for the vector of the same features.
+ *
+ * A sink is not thread safe, but can be reset and reused for the next data point.
+ */
+public class ScoringSink implements FeatureConsumer {
+
+    private final WeightMatrix matrix;
+
+    private final double[] scores;
+
+    /****************************************************************
+     * @return An empty sink over the weights of the @param matrix
+     */
+    ScoringSink(WeightMatrix matrix, int numLabels) {
+
+        this.matrix = matrix;
+        this.scores = new double[numLabels];
+    }
+
+    /****************************************************************
+     * Adds the weights of the @param feature times the @param value to the scores
+     */
+    @Override
+    public void accept(int feature, double value) {
+
+        matrix.accumulate(feature, value, scores);
+    }
+
+    /****************************************************************
+     * @return The scores of all the labels so far, indexed by the labels indices
+     */
+    public double[] scores() {
+
+        return scores;
+    }
+
+    /****************************************************************
+     * @return the @param k best labels by the scores so far
+     */
+    public TopLabels top(int k) {
+
+        return TopLabels.select(matrix.labels(), scores, k);
+    }
+
+    /****************************************************************
+     * Clears the scores for the next data point
+     */
+    public void reset() {
+
+        Arrays.fill(scores, 0.0);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.learning;
+
+import nlp.data.Labels;
+
+/**
+ * The k best labels of a datapoint, as label indices and primitive scores ordered from the best.
+ *
+ * They are selected from the scores of all the labels without sorting them: a label only
+ * enters the k best kept so far if it scores more than the last of them, so for the small k
+ * used (the best label, or the two best) it is one pass over the scores. Labels with equal
+ * scores keep the order of their indices, as with the sorted list of Scorer.score.
+ */
+public class TopLabels {
+
+    private final Labels labels;
+
+    private final int[] indices;
+
+    private final double[] scores;
+
+    private int size = 0;
+
+    /****************************************************************
+     * @return The @param k best of the @param scores of all the labels, indexed by the label indices
+     */
+    public static TopLabels select(Labels labels, double[] scores, int k) {
+
+        TopLabels top = new TopLabels(labels, Math.min(k, scores.length));
+        for (int l = 0; l < scores.length; l++) {
+            top.offer(l, scores[l]);
+        }
+        return top;
+    }
+
+    /****************************************************************
+     * @return Empty top labels with room for @param k labels, to be offered the scored labels
+     */
+    static TopLabels empty(Labels labels, int k) {
+
+        return new TopLabels(labels, k);
+    }
+
+    /****************************************************************
+     * @return Empty top labels with room for @param k labels
+     */
+    private TopLabels(Labels labels, int k) {
+
+        this.labels = labels;
+        this.indices = new int[k];
+        this.scores = new double[k];
+    }
+
+    /****************************************************************
+     * Inserts the label in its place among the best ones, if it is one of them
+     */
+    void offer(int label, double score) {
+
+        if (size == indices.length && (size == 0 || score <= scores[size - 1]))
+            return;
+
+        int i = size < indices.length ? size++ : size - 1;
+        while (i > 0 && score > scores[i - 1]) {
+            indices[i] = indices[i - 1];
+            scores[i] = scores[i - 1];
+            i--;
+        }
+        indices[i] = label;
+        scores[i] = score;
+    }
+
+    /****************************************************************
+     * @return The number of labels selected
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /****************************************************************
+     * @return The index of the label at @param rank, 0 being the best
+     */
+    public int label(int rank) {
+
+        return indices[rank];
+    }
+
+    /****************************************************************
+     * @return The score of the label at @param rank
+     */
+    public double score(int rank) {
+
+        return scores[rank];
+    }
+
+    /****************************************************************
+     * @return The name of the label at @param rank
+     */
+    public String name(int rank) {
+
+        return labels.label(indices[rank]);
+    }
+}
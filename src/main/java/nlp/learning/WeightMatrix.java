@@ -0,0 +1,370 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.learning;
+
+import edu.stanford.nlp.util.Pair;
+import nlp.data.Labels;
+import nlp.features.FeatureDictionary;
+import nlp.features.HashingFeatureDictionary;
+import nlp.features.IndexedFeatureVector;
+import nlp.features.SparseFeatureVector;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A scorer over the weights of a trained linear model laid out feature major, i.e. for each
+ * feature id the weights of all the labels are consecutive. Scoring a data point is then a
+ * single pass over its features, accumulating the scores of all the labels at once, instead
+ * of one inner product per label.
+ *
+ * Only the features with a weight for some label get a row of the matrix, an index from the
+ * feature ids to the rows marks the others with -1. Features which were never trained on or
+ * whose weights were pruned therefore take no room besides their entry in the index.
+ *
+ * The matrix is saved in a versioned binary format, which is memory mapped when loaded, so
+ * several processes serving the same model share one (page cached) copy of the weights.
+ * The file consists of: a header (magic, version, number of labels, number of features,
+ * number of rows, hashing bits or 0 for named features), the labels, the feature names of a
+ * named dictionary, the index of the rows and the numRows x numLabels float32 matrix, big-endian.
+ * A string is written as its length followed by its UTF-16 chars.
+ */
+public class WeightMatrix implements Scorer {
+
+    private static final int MAGIC = 0x5157544d;
+    private static final int VERSION = 2;
+
+    private final Labels labels;
+
+    private final FeatureDictionary features;
+
+    private final int numLabels;
+
+    private final int numFeatures;
+
+    private final int numRows;
+
+    // for each feature id, its row or -1 when it has no weights
+    private final IntBuffer rows;
+
+    // numRows x numLabels, either on the heap or mapped from a file
+    private final FloatBuffer weights;
+
+    /****************************************************************
+     * @return The matrix of the weights given per label
+     */
+    WeightMatrix(Labels labels, FeatureDictionary features, IndexedFeatureVector[] labelWeights) {
+
+        this.labels = labels;
+        this.features = features;
+        this.numLabels = labelWeights.length;
+        this.numFeatures = features.size();
+        this.rows = IntBuffer.allocate(numFeatures);
+
+        // the rows in the order of the feature ids
+        for (int f = 0; f < numFeatures; f++) {
+            rows.put(f, -1);
+        }
+        for (IndexedFeatureVector w : labelWeights) {
+            w.forEach((k, v) -> {
+                if (k < numFeatures && v != 0.0)
+                    rows.put(k, 0);
+            });
+        }
+        int row = 0;
+        for (int f = 0; f < numFeatures; f++) {
+            if (rows.get(f) == 0)
+                rows.put(f, row++);
+        }
+        this.numRows = row;
+
+        this.weights = FloatBuffer.allocate(numRows * numLabels);
+        for (int l = 0; l < numLabels; l++) {
+            final int label = l;
+            labelWeights[l].forEach((k, v) -> {
+                if (k < numFeatures && v != 0.0)
+                    weights.put(rows.get(k) * numLabels + label, (float) v);
+            });
+        }
+    }
+
+    /****************************************************************
+     * @return The matrix over already laid out weights
+     */
+    private WeightMatrix(Labels labels, FeatureDictionary features, int numLabels, int numRows, IntBuffer rows, FloatBuffer weights) {
+
+        this.labels = labels;
+        this.features = features;
+        this.numLabels = numLabels;
+        this.numFeatures = features.size();
+        this.numRows = numRows;
+        this.rows = rows;
+        this.weights = weights;
+    }
+
+    /****************************************************************
+     * @return A model saved either by save(), which is memory mapped, or as a (also old)
+     *         serialized PassiveAggressiveClassifier, which is compacted while loading
+     */
+    public static WeightMatrix load(Path modelPath) throws IOException, ClassNotFoundException {
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(modelPath))) {
+            if (in.readInt() != MAGIC)
+                return PassiveAggressiveClassifier.load(modelPath).compact();
+        }
+
+        try (FileChannel channel = FileChannel.open(modelPath, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Model file is too large to be mapped: " + modelPath);
+
+            // the mapping stays valid after the channel is closed
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /****************************************************************
+     * @return The matrix in the binary format, with the weights viewed in place
+     */
+    private static WeightMatrix read(ByteBuffer buffer) throws IOException {
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            throw new IOException("Not a model file of version " + VERSION);
+
+        int numLabels = buffer.getInt();
+        int numFeatures = buffer.getInt();
+        int numRows = buffer.getInt();
+        int bits = buffer.getInt();
+
+        // the labels which were seen only once are indexed but have no name, as in training
+        Labels labels = new Labels();
+        for (int l = 0; l < numLabels; l++) {
+            String label = readString(buffer);
+            labels.index(label);
+            if (buffer.get() != 0)
+                labels.index(label);
+        }
+
+        FeatureDictionary features;
+        if (bits > 0) {
+            features = new HashingFeatureDictionary(bits);
+        }
+        else {
+            features = new FeatureDictionary();
+            for (int f = 0; f < numFeatures; f++) {
+                features.index(readString(buffer));
+            }
+        }
+        features.freeze();
+
+        buffer.position(align(buffer.position()));
+
+        ByteBuffer index = buffer.slice();
+        index.limit(numFeatures * Integer.BYTES);
+        IntBuffer rows = index.asIntBuffer();
+        buffer.position(buffer.position() + numFeatures * Integer.BYTES);
+
+        buffer.limit(buffer.position() + numRows * numLabels * Float.BYTES);
+        return new WeightMatrix(labels, features, numLabels, numRows, rows, buffer.slice().asFloatBuffer());
+    }
+
+    /****************************************************************
+     * Saves the matrix into the binary format at @param outPath
+     */
+    public void save(Path outPath) throws IOException {
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(outPath)))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numLabels);
+            out.writeInt(numFeatures);
+            out.writeInt(numRows);
+            out.writeInt(features instanceof HashingFeatureDictionary ? ((HashingFeatureDictionary) features).bits() : 0);
+
+            List<String> all = labels.all();
+            for (int l = 0; l < numLabels; l++) {
+                writeString(out, all.get(l));
+                out.writeBoolean(labels.label(l) != null);
+            }
+
+            if (!(features instanceof HashingFeatureDictionary)) {
+                for (int f = 0; f < numFeatures; f++) {
+                    writeString(out, features.name(f));
+                }
+            }
+
+            // padding so that the matrix is aligned
+            for (int i = out.size(); i < align(out.size()); i++) {
+                out.writeByte(0);
+            }
+
+            for (int f = 0; f < numFeatures; f++) {
+                out.writeInt(rows.get(f));
+            }
+
+            for (int i = 0; i < numRows * numLabels; i++) {
+                out.writeFloat(weights.get(i));
+            }
+        }
+    }
+
+    /****************************************************************
+     * @return The string at the position of the buffer, moving past it
+     */
+    private static String readString(ByteBuffer buffer) {
+
+        char[] chars = new char[buffer.getInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+    /****************************************************************
+     * Writes the length and the chars of @param string
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+
+        out.writeInt(string.length());
+        out.writeChars(string);
+    }
+
+    /****************************************************************
+     * @return The offset rounded up to a multiple of 4
+     */
+    private static int align(int offset) {
+
+        return (offset + 3) & ~3;
+    }
+
+    /****************************************************************
+     * @return The scores of all the labels, indexed by the labels indices
+     */
+    public double[] scores(IndexedFeatureVector dataPoint) {
+
+        double[] scores = new double[numLabels];
+        dataPoint.forEach((k, v) -> accumulate(k, v, scores));
+        return scores;
+    }
+
+    /****************************************************************
+     * Adds the weights of the @param feature times the @param value to the @param scores
+     */
+    void accumulate(int feature, double value, double[] scores) {
+
+        int row = feature >= 0 && feature < numFeatures ? rows.get(feature) : -1;
+        if (row < 0)
+            return;
+        int start = row * numLabels;
+        for (int l = 0; l < numLabels; l++) {
+            scores[l] += weights.get(start + l) * value;
+        }
+    }
+
+    /****************************************************************
+     * @return A sink scoring the features streamed into it, see ScoringSink
+     */
+    public ScoringSink sink() {
+
+        return new ScoringSink(this, numLabels);
+    }
+
+    /****************************************************************
+     * @return a list of labels(ranking) scored by the weights
+     */
+    @Override
+    public List<Pair<String, Double>> score(SparseFeatureVector dataPoint) {
+
+        features.checkNamed();
+        IndexedFeatureVector indexed = new IndexedFeatureVector(dataPoint.getFeatures().size());
+        dataPoint.getFeatures().forEach((k, v) -> indexed.add(features.lookup(k), v));
+        return score(features.fold(indexed));
+    }
+
+    /****************************************************************
+     * @return a list of labels(ranking) scored by the weights, for a datapoint
+     *         indexed with the features of the model
+     */
+    @Override
+    public List<Pair<String, Double>> score(IndexedFeatureVector dataPoint) {
+
+        double[] scores = scores(dataPoint);
+
+        List<Pair<String, Double>> results = new ArrayList<>(numLabels);
+        for (int l = 0; l < numLabels; l++) {
+            results.add(new Pair<>(labels.label(l), scores[l]));
+        }
+
+        results.sort(new Pair.BySecondReversePairComparator<>());
+        return results;
+    }
+
+    /****************************************************************
+     * @return the @param k best labels for a datapoint indexed with the features of the model
+     */
+    @Override
+    public TopLabels top(IndexedFeatureVector dataPoint, int k) {
+
+        return TopLabels.select(labels, scores(dataPoint), k);
+    }
+
+    /****************************************************************
+     * @return the ids of the features used by the model
+     */
+    @Override
+    public FeatureDictionary features() {
+
+        return features;
+    }
+
+    /****************************************************************
+     * @return the labels of the model
+     */
+    public Labels labels() {
+
+        return labels;
+    }
+
+    /****************************************************************
+     * @return The number of bytes taken by the weights
+     */
+    public long weightsSize() {
+
+        return (long) numFeatures * Integer.BYTES + (long) numRows * numLabels * Float.BYTES;
+    }
+
+    /****************************************************************
+     * @return The number of features with weights, i.e. rows of the matrix
+     */
+    public int rows() {
+
+        return numRows;
+    }
+
+    /****************************************************************
+     * @return The matrix with the weights quantized into bytes, scaled per label
+     */
+    public QuantizedWeightMatrix quantize() {
+
+        return new QuantizedWeightMatrix(labels, features, numLabels, numRows, rows, weights);
+    }
+}
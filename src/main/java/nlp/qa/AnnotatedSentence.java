@@ -0,0 +1,97 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.qa;
+
+import edu.emory.clir.clearnlp.dependency.DEPTree;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.util.List;
+
+/**
+ * A sentence with all its annotations, computed once: the tokens, POS tags, lemmas, named
+ * entities and dependencies by CoreNLP, and the semantic roles (with the dependencies they are
+ * labeled over) by ClearNLP, which takes the tokens, tags and lemmas of CoreNLP instead of its own.
+ * The question classification, the semantic roles matching and the answer extractors all read it,
+ * so a text is tokenized, tagged and parsed once for all of them, see QuestionFociExtractor.annotate.
+ *
+ * The annotations are read only for the consumers.
+ */
+public class AnnotatedSentence {
+
+    private final String text;
+
+    private final CoreMap sentence;
+
+    private final DEPTree tree;
+
+    /****************************************************************
+     * @return the @param text with its CoreNLP @param sentence and the ClearNLP @param tree of it
+     */
+    public AnnotatedSentence(String text, CoreMap sentence, DEPTree tree) {
+
+        this.text = text;
+        this.sentence = sentence;
+        this.tree = tree;
+    }
+
+    /****************************************************************
+     * @return The text of the sentence
+     */
+    public String text() {
+
+        return text;
+    }
+
+    /****************************************************************
+     * @return The CoreNLP annotated sentence
+     */
+    public CoreMap sentence() {
+
+        return sentence;
+    }
+
+    /****************************************************************
+     * @return The tokens, with their POS tags, lemmas and named entities
+     */
+    public List<CoreLabel> tokens() {
+
+        return sentence.get(CoreAnnotations.TokensAnnotation.class);
+    }
+
+    /****************************************************************
+     * @return The dependency parse by CoreNLP, or null if it was not parsed
+     */
+    public SemanticGraph graph() {
+
+        return sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);
+    }
+
+    /****************************************************************
+     * @return The ClearNLP tree with the semantic roles
+     */
+    public DEPTree tree() {
+
+        return tree;
+    }
+
+    /****************************************************************
+     * @return the text of the sentence
+     */
+    @Override
+    public String toString() {
+
+        return text;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.qa;
+
+import edu.emory.clir.clearnlp.dependency.DEPFeat;
+import edu.emory.clir.clearnlp.dependency.DEPNode;
+import edu.emory.clir.clearnlp.dependency.DEPTree;
+import edu.emory.clir.clearnlp.util.arc.SRLArc;
+import edu.stanford.nlp.international.Language;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.trees.UniversalEnglishGrammaticalRelations;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary form of an annotated sentence, so that the candidate answers can be parsed once
+ * when they are indexed, and stored with the index next to their text, see IndexSentences. At query
+ * time the sentence is decoded from it instead of being parsed again, so only the question is parsed.
+ *
+ * The form keeps all that the consumers of an annotated sentence read: the tokens with their tags,
+ * lemmas and named entities, the basic dependencies of CoreNLP, and the ClearNLP nodes with their
+ * dependencies, features (e.g. the roleset ids) and semantic heads. The sentences annotated with
+ * other models are not told apart, so an index is built again when the models change. A form of
+ * another version is not decoded.
+ */
+public class AnnotationCodec {
+
+    // the name of the stored field of the annotations in an index
+    public static final String ANNOTATION_FIELD = "annotation";
+
+    private static final int VERSION = 1;
+
+    /****************************************************************
+     * @return The binary form of the annotated @param sentence
+     */
+    public static byte[] encode(AnnotatedSentence sentence) {
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(VERSION);
+
+            // the tokens of CoreNLP
+            List<CoreLabel> tokens = sentence.tokens();
+            out.writeInt(tokens.size());
+            for (CoreLabel token : tokens) {
+                writeString(out, token.word());
+                writeString(out, token.originalText());
+                writeString(out, token.tag());
+                writeString(out, token.lemma());
+                writeString(out, token.ner());
+                writeString(out, token.before());
+                writeString(out, token.after());
+                out.writeInt(token.index());
+                out.writeInt(token.beginPosition());
+                out.writeInt(token.endPosition());
+            }
+
+            // the basic dependencies of CoreNLP, over the indices of the tokens
+            SemanticGraph graph = sentence.graph();
+            out.writeBoolean(graph != null);
+            if (graph != null) {
+                out.writeInt(graph.vertexSet().size());
+                for (IndexedWord vertex : graph.vertexListSorted()) {
+                    out.writeInt(vertex.index());
+                }
+                out.writeInt(graph.getRoots().size());
+                for (IndexedWord root : graph.getRoots()) {
+                    out.writeInt(root.index());
+                }
+                out.writeInt(graph.edgeCount());
+                for (SemanticGraphEdge edge : graph.edgeListSorted()) {
+                    out.writeInt(edge.getGovernor().index());
+                    out.writeInt(edge.getDependent().index());
+                    GrammaticalRelation relation = edge.getRelation();
+                    out.writeUTF(relation.getLanguage().name());
+                    out.writeUTF(relation.toString());
+                    out.writeUTF(relation.getShortName());
+                    writeString(out, relation.getSpecific());
+                    out.writeDouble(edge.getWeight());
+                    out.writeBoolean(edge.isExtra());
+                }
+            }
+
+            // the nodes of ClearNLP, over their ids, the root being 0
+            DEPTree tree = sentence.tree();
+            out.writeBoolean(tree != null);
+            if (tree != null) {
+                out.writeInt(tree.size() - 1);
+                for (int i = 1; i < tree.size(); i++) {
+                    DEPNode node = tree.get(i);
+                    writeString(out, node.getWordForm());
+                    writeString(out, node.getLemma());
+                    writeString(out, node.getPOSTag());
+                    writeString(out, node.getNamedEntityTag());
+                    DEPFeat feats = node.getFeats();
+                    out.writeInt(feats == null ? 0 : feats.size());
+                    if (feats != null) {
+                        for (Map.Entry<String, String> feat : feats.entrySet()) {
+                            writeString(out, feat.getKey());
+                            writeString(out, feat.getValue());
+                        }
+                    }
+                    out.writeInt(node.getHead() == null ? -1 : node.getHead().getID());
+                    writeString(out, node.getLabel());
+                }
+                for (int i = 1; i < tree.size(); i++) {
+                    List<SRLArc> arcs = tree.get(i).getSemanticHeadArcList();
+                    out.writeInt(arcs.size());
+                    for (SRLArc arc : arcs) {
+                        out.writeInt(arc.getNode().getID());
+                        writeString(out, arc.getLabel());
+                        writeString(out, arc.getNumberedArgumentTag());
+                    }
+                }
+            }
+
+            out.flush();
+            return bytes.toByteArray();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Cannot encode the annotations of: " + sentence.text(), e);
+        }
+    }
+
+    /****************************************************************
+     * @return The sentence of the @param text annotated as in the binary form @param bytes,
+     *         or null if the form is of another version
+     */
+    public static AnnotatedSentence decode(String text, byte[] bytes) {
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != VERSION)
+                return null;
+
+            // the tokens
+            int size = in.readInt();
+            List<CoreLabel> tokens = new ArrayList<>(size);
+            Map<Integer, CoreLabel> byIndex = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                CoreLabel token = new CoreLabel();
+                token.setWord(readString(in));
+                token.setValue(token.word());
+                token.setOriginalText(readString(in));
+                token.setTag(readString(in));
+                token.setLemma(readString(in));
+                token.setNER(readString(in));
+                token.setBefore(readString(in));
+                token.setAfter(readString(in));
+                token.setIndex(in.readInt());
+                token.setBeginPosition(in.readInt());
+                token.setEndPosition(in.readInt());
+                token.setSentIndex(0);
+                tokens.add(token);
+                byIndex.put(token.index(), token);
+            }
+
+            CoreMap sentence = new ArrayCoreMap();
+            sentence.set(CoreAnnotations.TextAnnotation.class, text);
+            sentence.set(CoreAnnotations.TokensAnnotation.class, tokens);
+
+            // the dependencies
+            if (in.readBoolean()) {
+                SemanticGraph graph = new SemanticGraph();
+                Map<Integer, IndexedWord> vertices = new HashMap<>();
+                int vertexCount = in.readInt();
+                for (int i = 0; i < vertexCount; i++) {
+                    int index = in.readInt();
+                    IndexedWord vertex = new IndexedWord(byIndex.get(index));
+                    vertices.put(index, vertex);
+                    graph.addVertex(vertex);
+                }
+                int rootCount = in.readInt();
+                for (int i = 0; i < rootCount; i++) {
+                    graph.addRoot(vertices.get(in.readInt()));
+                }
+                int edgeCount = in.readInt();
+                for (int i = 0; i < edgeCount; i++) {
+                    IndexedWord governor = vertices.get(in.readInt());
+                    IndexedWord dependent = vertices.get(in.readInt());
+                    GrammaticalRelation relation = relation(Language.valueOf(in.readUTF()), in.readUTF(), in.readUTF(), readString(in));
+                    graph.addEdge(governor, dependent, relation, in.readDouble(), in.readBoolean());
+                }
+                sentence.set(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class, graph);
+            }
+
+            // the tree with the semantic roles
+            DEPTree tree = null;
+            if (in.readBoolean()) {
+                int nodeCount = in.readInt();
+                List<String> forms = new ArrayList<>(nodeCount);
+                String[][] labels = new String[nodeCount][];
+                DEPFeat[] feats = new DEPFeat[nodeCount];
+                int[] heads = new int[nodeCount];
+                String[] headLabels = new String[nodeCount];
+                for (int i = 0; i < nodeCount; i++) {
+                    forms.add(readString(in));
+                    labels[i] = new String[]{readString(in), readString(in), readString(in)};
+                    feats[i] = new DEPFeat();
+                    int featCount = in.readInt();
+                    for (int f = 0; f < featCount; f++) {
+                        feats[i].put(readString(in), readString(in));
+                    }
+                    heads[i] = in.readInt();
+                    headLabels[i] = readString(in);
+                }
+
+                tree = new DEPTree(forms);
+                for (int i = 0; i < nodeCount; i++) {
+                    DEPNode node = tree.get(i + 1);
+                    node.setLemma(labels[i][0]);
+                    node.setPOSTag(labels[i][1]);
+                    node.setNamedEntityTag(labels[i][2]);
+                    node.setFeats(feats[i]);
+                    if (heads[i] >= 0)
+                        node.setHead(tree.get(heads[i]), headLabels[i]);
+                }
+                for (int i = 0; i < nodeCount; i++) {
+                    DEPNode node = tree.get(i + 1);
+                    int arcCount = in.readInt();
+                    for (int a = 0; a < arcCount; a++) {
+                        DEPNode head = tree.get(in.readInt());
+                        node.addSemanticHead(new SRLArc(head, readString(in), readString(in)));
+                    }
+                }
+            }
+
+            return new AnnotatedSentence(text, sentence, tree);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Cannot decode the annotations of: " + text, e);
+        }
+    }
+
+    /****************************************************************
+     * @return The relation of the @param language named @param name, with the @param shortName
+     *         and the @param specific (e.g. the preposition of a nmod), which may be null
+     */
+    private static GrammaticalRelation relation(Language language, String name, String shortName, String specific) {
+
+        // the relations with a specific are made by their factories, a name would not tell them apart
+        if (specific != null && language == Language.UniversalEnglish) {
+            switch (shortName) {
+                case "nmod":
+                    return UniversalEnglishGrammaticalRelations.getNmod(specific);
+                case "conj":
+                    return UniversalEnglishGrammaticalRelations.getConj(specific);
+                case "acl":
+                    return UniversalEnglishGrammaticalRelations.getAcl(specific);
+                case "advcl":
+                    return UniversalEnglishGrammaticalRelations.getAdvcl(specific);
+            }
+        }
+        return GrammaticalRelation.valueOf(language, name);
+    }
+
+    /****************************************************************
+     * Writes the @param s, which may be null, to the @param out
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    /****************************************************************
+     * @return The string, which may be null, read from the @param in
+     */
+    private static String readString(DataInputStream in) throws IOException {
+
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
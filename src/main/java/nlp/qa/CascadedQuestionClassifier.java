@@ -0,0 +1,155 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.qa;
+
+import nlp.features.IndexedFeatureVector;
+import nlp.features.QCFeaturizationPipeline;
+import nlp.learning.Scorer;
+import nlp.learning.ScoringSink;
+import nlp.learning.TopLabels;
+import nlp.learning.WeightMatrix;
+import nlp.semantics.SemanticParser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A question classifier in two stages. A fast classifier over the features of the fast pipeline
+ * (tokens and question word, no dependency parse and no named entities) classifies the question
+ * first, and only when its best label does not win over the second one by the threshold, the
+ * question is parsed and classified by the full classifier over the head words.
+ *
+ * The counts of the classified questions and of the ones which took the fast path are kept.
+ */
+public class CascadedQuestionClassifier {
+
+    private final QCFeaturizationPipeline fastPipeline;
+
+    private final Scorer fast;
+
+    public final QCFeaturizationPipeline pipeline;
+
+    public final Scorer full;
+
+    private final double threshold;
+
+    private final AtomicLong questions = new AtomicLong();
+
+    private final AtomicLong fastPath = new AtomicLong();
+
+    /****************************************************************
+     * @return the cascade of the @param fast classifier over the features of QCFeaturizationPipeline.fast()
+     *         and the @param full one over the features of the @param pipeline
+     * @param threshold The difference of the two best scores of the fast classifier under which
+     *                  the full classifier is used
+     */
+    public CascadedQuestionClassifier(Scorer fast, QCFeaturizationPipeline pipeline, Scorer full, double threshold) {
+
+        this.fastPipeline = QCFeaturizationPipeline.fast();
+        this.fast = fast;
+        this.pipeline = pipeline;
+        this.full = full;
+        this.threshold = threshold;
+    }
+
+    /****************************************************************
+     * @return the best label of the question, or null if it has no question word
+     */
+    public String classify(String question) {
+
+        return classify(() -> fastPipeline.extractor.extractQuestionFociWordsWithType(question),
+                () -> pipeline.extractor.extractQuestionFociWordsWithType(question));
+    }
+
+    /****************************************************************
+     * @return the best label of the already annotated question, or null if it has no question
+     *         word. Both stages take their terms from the same annotations, except when the
+     *         question was only annotated for the fast stage (see annotate()), then it is
+     *         parsed for the full stage only if it is taken.
+     */
+    public String classify(AnnotatedSentence question) {
+
+        return classify(() -> fastPipeline.extractor.extractQuestionFociWordsWithType(question),
+                () -> question.graph() != null ? pipeline.extractor.extractQuestionFociWordsWithType(question) :
+                        pipeline.extractor.extractQuestionFociWordsWithType(question.text()));
+    }
+
+    /****************************************************************
+     * @return the @param question annotated only as much as the fast stage needs: tokenized,
+     *         tagged and lemmatized, without the named entities and the dependency parse of
+     *         CoreNLP, and with the semantic roles of the @param parser over its tokens
+     */
+    public AnnotatedSentence annotate(String question, SemanticParser parser) {
+
+        return fastPipeline.extractor.annotate(question, parser);
+    }
+
+    /****************************************************************
+     * @return the best label of the question by the cascade, the terms of the full stage
+     *         extracted only when it is taken
+     */
+    private String classify(Supplier<QuestionFociTerms> fastTerms, Supplier<QuestionFociTerms> fullTerms) {
+
+        questions.incrementAndGet();
+
+        TopLabels top = top(fastPipeline, fast, fastTerms.get(), 2);
+        if (top != null && confident(top, threshold)) {
+            fastPath.incrementAndGet();
+            return top.name(0);
+        }
+
+        top = top(pipeline, full, fullTerms.get(), 1);
+        return top == null ? null : top.name(0);
+    }
+
+    /****************************************************************
+     * @return the @param k best labels of the question of the extracted @param qt by the
+     *         @param scorer over the features of the @param pipeline, or null if the question has
+     *         no question word. The weights of a compacted model score the features as the
+     *         pipeline emits them, without a feature vector built for the question.
+     */
+    static TopLabels top(QCFeaturizationPipeline pipeline, Scorer scorer, QuestionFociTerms qt, int k) {
+
+        if (scorer instanceof WeightMatrix) {
+            ScoringSink sink = ((WeightMatrix) scorer).sink();
+            return pipeline.emit(qt, scorer.features(), sink) ? sink.top(k) : null;
+        }
+
+        IndexedFeatureVector features = pipeline.featurize(qt, scorer.features());
+        return features == null ? null : scorer.top(features, k);
+    }
+
+    /****************************************************************
+     * @return whether the best of the @param top labels wins by at least the @param threshold,
+     *         so that the fast classification is taken
+     */
+    public static boolean confident(TopLabels top, double threshold) {
+
+        return top.size() < 2 || top.score(0) - top.score(1) >= threshold;
+    }
+
+    /****************************************************************
+     * @return the number of the questions classified so far
+     */
+    public long questions() {
+
+        return questions.get();
+    }
+
+    /****************************************************************
+     * @return the fraction of the questions classified so far which took the fast path
+     */
+    public double fastPathFraction() {
+
+        long total = questions.get();
+        return total == 0 ? 0.0 : (double) fastPath.get() / total;
+    }
+}
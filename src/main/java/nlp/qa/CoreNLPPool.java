@@ -0,0 +1,138 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.qa;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A bounded pool of CoreNLP pipelines of the same properties, so that several threads can annotate
+ * at once: each annotation takes a pipeline of its own from the pool and gives it back after.
+ *
+ * The pipelines are created when needed, up to the size of the pool, after which the threads wait for
+ * a free one. They all get their annotators from the annotator pool of CoreNLP, so the models (the
+ * POS tagger, the NER classifiers, the dependency parser) are loaded once by the first pipeline, and
+ * then only read by all of them.
+ */
+public class CoreNLPPool {
+
+    private final Properties props;
+
+    private final int size;
+
+    private final LinkedBlockingQueue<StanfordCoreNLP> idle = new LinkedBlockingQueue<>();
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    /****************************************************************
+     * @return A pool of at most @param size pipelines of the @param props, with the first
+     *         pipeline created, so that the models are loaded now
+     */
+    public CoreNLPPool(Properties props, int size) {
+
+        if (size < 1)
+            throw new RuntimeException("A pool needs at least one pipeline, not " + size);
+        this.props = props;
+        this.size = size;
+        created.incrementAndGet();
+        idle.add(new StanfordCoreNLP(props));
+    }
+
+    /****************************************************************
+     * Annotates the @param document by a pipeline of the pool, waiting for one if they are all busy
+     */
+    public void annotate(Annotation document) {
+
+        StanfordCoreNLP pipeline = acquire();
+        try {
+            pipeline.annotate(document);
+        }
+        finally {
+            idle.add(pipeline);
+        }
+    }
+
+    /****************************************************************
+     * Annotates the @param documents on @param threads threads the way CoreNLP does, by one pipeline
+     * of the pool whose annotators all the threads share, and gives each annotated document to the
+     * @param callback, as soon as it is done: in any order, and from any of the threads
+     */
+    public void annotate(Iterable<Annotation> documents, int threads, Consumer<Annotation> callback) {
+
+        StanfordCoreNLP pipeline = acquire();
+        try {
+            // on one thread CoreNLP 3.7 annotates the documents, and calls the callback, twice
+            if (threads <= 1) {
+                for (Annotation document : documents) {
+                    pipeline.annotate(document);
+                    callback.accept(document);
+                }
+            }
+            else {
+                pipeline.annotate(documents, threads, callback);
+            }
+        }
+        finally {
+            idle.add(pipeline);
+        }
+    }
+
+    /****************************************************************
+     * @return A free pipeline, created if there is none and the pool is not full
+     */
+    private StanfordCoreNLP acquire() {
+
+        StanfordCoreNLP pipeline = idle.poll();
+        if (pipeline != null)
+            return pipeline;
+
+        for (int n = created.get(); n < size; n = created.get()) {
+            if (created.compareAndSet(n, n + 1)) {
+                try {
+                    return new StanfordCoreNLP(props);
+                }
+                catch (RuntimeException e) {
+                    created.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+
+        try {
+            return idle.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a pipeline", e);
+        }
+    }
+
+    /****************************************************************
+     * @return The most pipelines of the pool, i.e. the most annotations at once
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /****************************************************************
+     * @return The number of pipelines created so far
+     */
+    public int created() {
+
+        return created.get();
+    }
+}
@@ -13,21 +13,28 @@ package nlp.qa;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.IndexedWord;
 import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.semgraph.SemanticGraph;
 import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Pair;
 import edu.stanford.nlp.util.PropertiesUtils;
+import nlp.semantics.ParseCache;
+import nlp.semantics.SemanticParser;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This class extracts head words from a question later on to be used to featurize
  * the sentence for learning a classifier.
  *
  * http://www.adampease.org/professional/GlobalWordNet2016.pdf
+ *
+ * An extractor can be used by many threads at once: each annotation runs on a pipeline of its own
+ * from a pool (see CoreNLPPool), which share the models, and the extraction keeps no state.
  */
 public class QuestionFociExtractor {
 
@@ -36,20 +43,67 @@ public class QuestionFociExtractor {
     private final static HashSet<String> muchMany = set("much many");
     private final static HashSet<String> typeBrandKind = set("type brand kind");
     private final static HashSet<String> entailment = set("am be was is were do does did 's are can called named known");
-    private final StanfordCoreNLP pipeline;
+    // the pipelines, one for each of the threads annotating at once
+    private final CoreNLPPool pipelines;
+
+    // the identity of the annotators in the parse cache
+    private final String annotators;
+
+    // the cache of the annotated sentences, if any
+    private ParseCache<CoreMap> cache;
 
     /****************************************************************
-     * @return an instance of the foci extractor
+     * @return an instance of the foci extractor, which can be used by as many threads
+     *         at once as there are cores
      */
     public QuestionFociExtractor() {
 
-        // Create the Stanford CoreNLP pipeline
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /****************************************************************
+     * @return an instance of the foci extractor, which annotates for at most @param threads
+     *         threads at once, the other ones wait
+     */
+    public QuestionFociExtractor(int threads) {
+
+        this("tokenize,ssplit,pos,lemma,ner,depparse", threads);
+    }
+
+    /****************************************************************
+     * @return an instance of the extractor running only the @param annotators,
+     *         for at most @param threads threads at once
+     */
+    protected QuestionFociExtractor(String annotators, int threads) {
+
+        // Create the Stanford CoreNLP pipelines, sharing the models
         Properties props = PropertiesUtils.asProperties("annotators",
-                "tokenize,ssplit,pos,lemma,ner,depparse",
+                annotators,
                 "ssplit.isOneSentence", "true",
                 "tokenize.language", "en");
 
-        this.pipeline = new StanfordCoreNLP(props);
+        this.pipelines = new CoreNLPPool(props, threads);
+        this.annotators = "corenlp," + annotators;
+    }
+
+    /****************************************************************
+     * @return a cache of annotated sentences of at most @param maxTokens tokens in total,
+     *         which can be shared by several extractors
+     */
+    public static ParseCache<CoreMap> cache(long maxTokens) {
+
+        return new ParseCache<>(maxTokens, s -> s.get(CoreAnnotations.TokensAnnotation.class).size());
+    }
+
+    /****************************************************************
+     * Caches the annotated sentences in the @param cache from now on, which are then
+     * shared, so that their consumers must not change them
+     * @return this extractor
+     */
+    public QuestionFociExtractor cached(ParseCache<CoreMap> cache) {
+
+        this.cache = cache;
+        return this;
     }
 
     /****************************************************************
@@ -60,19 +114,93 @@ public class QuestionFociExtractor {
         return annotateSentence(text).get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);
     }
 
+    /****************************************************************
+     * @return the @param text annotated once for all the consumers: by the pipeline of this
+     *         extractor, and by the @param parser over the same tokens for the semantic roles
+     */
+    public AnnotatedSentence annotate(String text, SemanticParser parser) {
+
+        CoreMap sentence = annotateSentence(text);
+        return new AnnotatedSentence(text, sentence, parser.parse(sentence));
+    }
+
     /****************************************************************
      * @return an annotated first sentence from the text represented by an instance of CoreMap
      *         Note: assuming that @param text contains only one sentence
      */
-    private CoreMap annotateSentence(String text) {
+    protected CoreMap annotateSentence(String text) {
+
+        return cache == null ? annotateText(text) : cache.get(annotators, text, this::annotateText);
+    }
+
+    /****************************************************************
+     * @return the annotated first sentence of the @param text, not cached
+     */
+    private CoreMap annotateText(String text) {
 
         Annotation doc = new Annotation(text);
-        pipeline.annotate(doc);
+        pipelines.annotate(doc);
 
         // Loop over sentences in the document
         return doc.get(CoreAnnotations.SentencesAnnotation.class).get(0);
     }
 
+    /****************************************************************
+     * Annotates the @param texts on @param threads threads, and gives their annotated first
+     * sentences to the @param callback in the order of the texts, from one thread at a time.
+     * The cached sentences are not annotated again, the others are annotated together by
+     * CoreNLP and cached.
+     */
+    public void annotateSentences(List<String> texts, int threads, Consumer<CoreMap> callback) {
+
+        annotateSentences(texts, threads, s -> s, callback);
+    }
+
+    /****************************************************************
+     * Annotates the @param texts on @param threads threads, maps each annotated sentence by the
+     * @param then on the thread which annotated it, and gives the results to the @param callback
+     * in the order of the texts
+     */
+    private <T> void annotateSentences(List<String> texts, int threads, Function<CoreMap, T> then, Consumer<T> callback) {
+
+        InOrder<T> results = new InOrder<>(texts.size(), callback);
+
+        // the documents to annotate, with the positions of their texts
+        Map<Annotation, Integer> positions = new IdentityHashMap<>();
+        List<Annotation> documents = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            CoreMap cached = cache == null ? null : cache.find(annotators, texts.get(i));
+            if (cached != null) {
+                results.set(i, then.apply(cached));
+            }
+            else {
+                Annotation document = new Annotation(texts.get(i));
+                positions.put(document, i);
+                documents.add(document);
+            }
+        }
+
+        pipelines.annotate(documents, threads, document -> {
+            int i = positions.get(document);
+            results.set(i, then.apply(cached(texts.get(i), document.get(CoreAnnotations.SentencesAnnotation.class).get(0))));
+        });
+
+        // CoreNLP skips the documents it failed on, they are annotated again to report the failure
+        for (Annotation document : documents) {
+            int i = positions.get(document);
+            if (!results.isSet(i))
+                results.set(i, then.apply(cached(texts.get(i), annotateText(texts.get(i)))));
+        }
+    }
+
+    /****************************************************************
+     * @return the @param sentence of the @param text, or the one cached first for the same text
+     */
+    private CoreMap cached(String text, CoreMap sentence) {
+
+        return cache == null ? sentence : cache.put(annotators, text, sentence);
+    }
+
     /****************************************************************
      * Currently using a simple heuristic. Find a question word from a list, and
      * if not found, go for the imperative word.
@@ -84,6 +212,15 @@ public class QuestionFociExtractor {
         List<IndexedWord> nodes = graph.getAllNodesByWordPattern(".*");
         nodes.sort(Comparator.comparingInt(n -> n.index()));
 
+        return extractQuestionWord(nodes);
+    }
+
+    /****************************************************************
+     * @return The first question word of the @param nodes in the order of the sentence,
+     *         or else the first imperative word, or null
+     */
+    protected static IndexedWord extractQuestionWord(List<IndexedWord> nodes) {
+
         Optional<IndexedWord> questionOption = nodes.stream().
                 filter(w -> questionWords.contains(w.word().toLowerCase())).findFirst();
         if (questionOption.isPresent()) {
@@ -102,9 +239,56 @@ public class QuestionFociExtractor {
      */
     public QuestionFociTerms extractQuestionFociWordsWithType(String sentence) {
 
+        return extract(annotateSentence(sentence));
+    }
+
+    /****************************************************************
+     * @return typed question foci terms with a question word of the already annotated
+     *         @param sentence, which is not annotated again
+     */
+    public QuestionFociTerms extractQuestionFociWordsWithType(AnnotatedSentence sentence) {
+
+        return extract(sentence.sentence());
+    }
+
+    /****************************************************************
+     * Extracts the typed question foci terms of the @param sentences, annotated on @param threads
+     * threads, and gives them to the @param callback in the order of the sentences
+     */
+    public void extractQuestionFociWordsWithType(List<String> sentences, int threads, Consumer<QuestionFociTerms> callback) {
+
+        annotateSentences(sentences, threads, this::extract, callback);
+    }
+
+    /****************************************************************
+     * Extracts the typed question foci terms of the @param sentences, annotated on @param threads
+     * threads, and gives them to the @param callback in the order of the sentences
+     */
+    public void extractQuestionFociWordsWithType(Stream<String> sentences, int threads, Consumer<QuestionFociTerms> callback) {
+
+        extractQuestionFociWordsWithType(sentences.collect(Collectors.toList()), threads, callback);
+    }
+
+    /****************************************************************
+     * @return typed question foci terms of the @param sentences in their order,
+     *         annotated on @param threads threads
+     */
+    public List<QuestionFociTerms> extractQuestionFociWordsWithType(List<String> sentences, int threads) {
+
+        List<QuestionFociTerms> terms = new ArrayList<>(sentences.size());
+        extractQuestionFociWordsWithType(sentences, threads, terms::add);
+        return terms;
+    }
+
+    /****************************************************************
+     * @return typed question foci terms with a question word, from the dependency parse
+     *         of the annotated @param sentence
+     */
+    protected QuestionFociTerms extract(CoreMap sentence) {
+
         final List<Pair<IndexedWord, String>> results = new ArrayList<>();
 
-        SemanticGraph graph = parse(sentence);
+        SemanticGraph graph = sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);
 
         IndexedWord questionWord = extractQuestionWord(graph);
 
@@ -196,4 +380,90 @@ public class QuestionFociExtractor {
 
         return d.tag() != null && (d.tag().startsWith("N") || d.tag().startsWith("F") || d.tag().startsWith("S") || d.tag().startsWith("J"));
     }
+
+    /**
+     * The results of a batch, given to a callback in the order of the batch as soon as all the
+     * ones before them are there, whichever threads set them. The callback is called out of the
+     * lock, by one thread at a time: the thread which finds the next results in order gives them,
+     * while the other threads only leave theirs and go on.
+     */
+    private static class InOrder<T> {
+
+        private final Object[] results;
+
+        private final boolean[] set;
+
+        private final Consumer<T> callback;
+
+        // the position of the next result to give to the callback
+        private int next = 0;
+
+        // whether a thread is giving the results to the callback
+        private boolean giving = false;
+
+        InOrder(int size, Consumer<T> callback) {
+
+            this.results = new Object[size];
+            this.set = new boolean[size];
+            this.callback = callback;
+        }
+
+        /****************************************************************
+         * Sets the @param result at the @param position, and gives the results which are
+         * now in order to the callback, unless another thread is giving them
+         */
+        void set(int position, T result) {
+
+            synchronized (this) {
+                if (set[position])
+                    return;
+                results[position] = result;
+                set[position] = true;
+                if (giving)
+                    return;
+                giving = true;
+            }
+
+            boolean done = false;
+            try {
+                for (List<T> ready = ready(); !ready.isEmpty(); ready = ready()) {
+                    ready.forEach(callback);
+                }
+                done = true;
+            }
+            finally {
+                // ready() stopped giving when it found nothing, else the callback failed
+                if (!done) {
+                    synchronized (this) {
+                        giving = false;
+                    }
+                }
+            }
+        }
+
+        /****************************************************************
+         * @return The results now in order, taken out of the batch; when there are none,
+         *         the thread stops giving them
+         */
+        @SuppressWarnings("unchecked")
+        private synchronized List<T> ready() {
+
+            List<T> ready = new ArrayList<>();
+            while (next < results.length && set[next]) {
+                ready.add((T) results[next]);
+                results[next++] = null;
+            }
+            if (ready.isEmpty())
+                giving = false;
+            return ready;
+        }
+
+        /****************************************************************
+         * @return Whether the result at the @param position was set
+         */
+        synchronized boolean isSet(int position) {
+
+            return set[position];
+        }
+    }
 }
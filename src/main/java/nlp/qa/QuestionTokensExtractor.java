@@ -0,0 +1,72 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.qa;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cheap version of the foci extractor, which does not parse the question: it only tags and
+ * lemmatizes it, without the ner and depparse annotators, and takes all its tokens as the terms
+ * (typed TOKEN) with the question word found the same way. It is the first stage of the
+ * CascadedQuestionClassifier.
+ *
+ * Note: as there is no dependency parse, parse() is not available. The terms of a sentence
+ * annotated by the full extractor are its tokens all the same.
+ */
+public class QuestionTokensExtractor extends QuestionFociExtractor {
+
+    private static final String TOKEN = "TOKEN";
+
+    /****************************************************************
+     * @return an instance of the extractor, which can be used by as many threads at once
+     *         as there are cores
+     */
+    public QuestionTokensExtractor() {
+
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /****************************************************************
+     * @return an instance of the extractor, which annotates for at most @param threads
+     *         threads at once
+     */
+    public QuestionTokensExtractor(int threads) {
+
+        super("tokenize,ssplit,pos,lemma", threads);
+    }
+
+    /****************************************************************
+     * @return the tokens of the question as terms, with its question word
+     */
+    @Override
+    protected QuestionFociTerms extract(CoreMap sentence) {
+
+        List<IndexedWord> tokens = new ArrayList<>();
+        sentence.get(CoreAnnotations.TokensAnnotation.class).forEach(t -> tokens.add(new IndexedWord(t)));
+
+        List<Pair<IndexedWord, String>> results = new ArrayList<>();
+        IndexedWord questionWord = extractQuestionWord(tokens);
+        if (questionWord == null) {
+            return new QuestionFociTerms(results, "", "");
+        }
+
+        tokens.forEach(t -> results.add(new Pair<>(t, TOKEN)));
+
+        String questionWordString = questionWord.word().toLowerCase();
+        return new QuestionFociTerms(results, questionWords.contains(questionWordString) ? questionWordString : "imperative", "NONE");
+    }
+}
@@ -19,13 +19,16 @@ import edu.emory.clir.clearnlp.dependency.DEPTree;
 import edu.emory.clir.clearnlp.srl.SRLTree;
 import edu.emory.clir.clearnlp.util.arc.SRLArc;
 import edu.stanford.nlp.ling.IndexedWord;
-import edu.stanford.nlp.semgraph.SemanticGraph;
 import edu.stanford.nlp.util.Pair;
 import edu.stanford.nlp.util.Sets;
+import nlp.data.Labels;
 import nlp.features.AnswerExtractionFeaturizer;
+import nlp.features.FeatureDictionary;
+import nlp.features.IndexedFeatureVector;
 import nlp.features.QCFeaturizationPipeline;
 import nlp.features.SparseFeatureVector;
 import nlp.learning.Scorer;
+import nlp.learning.TopLabels;
 import nlp.qa.extractors.*;
 import nlp.semantics.SemanticParser;
 
@@ -43,8 +46,17 @@ import static nlp.qa.QuestionsTaxonomy.*;
  */
 class ManuallySetExtractingScorer implements Scorer {
 
+    private static final String BEST = "BEST";
+
     private SparseFeatureVector weightsVector;
 
+    // the same weights over feature ids
+    private final FeatureDictionary features = new FeatureDictionary();
+    private final IndexedFeatureVector indexedWeightsVector;
+
+    // the single label of the scores
+    private final Labels labels = new Labels();
+
     public ManuallySetExtractingScorer() {
 
         // define the weights here
@@ -60,6 +72,13 @@ class ManuallySetExtractingScorer implements Scorer {
         weightsVector.add(AnswerExtractionFeaturizer.featureName(AnswerExtractionFeaturizer.WH), -1.0);
         weightsVector.add(AnswerExtractionFeaturizer.featureName(AnswerExtractionFeaturizer.ADVERB), -1.0);
         weightsVector.add(AnswerExtractionFeaturizer.featureName(AnswerExtractionFeaturizer.SEMANTIC_NONMATCH), -1.0);
+
+        indexedWeightsVector = weightsVector.toIndexed(features);
+        features.freeze();
+
+        // a label gets its name once it is seen twice
+        labels.index(BEST);
+        labels.index(BEST);
     }
 
     /****************************************************************
@@ -68,7 +87,34 @@ class ManuallySetExtractingScorer implements Scorer {
     @Override
     public List<Pair<String, Double>> score(SparseFeatureVector dataPoint) {
 
-        return Collections.singletonList(new Pair<>("BEST", dataPoint.dot(weightsVector)));
+        return Collections.singletonList(new Pair<>(BEST, dataPoint.dot(weightsVector)));
+    }
+
+    /****************************************************************
+     * @return scoring the indexed datapoint with the manual weights vector
+     */
+    @Override
+    public List<Pair<String, Double>> score(IndexedFeatureVector dataPoint) {
+
+        return Collections.singletonList(new Pair<>(BEST, dataPoint.dot(indexedWeightsVector)));
+    }
+
+    /****************************************************************
+     * @return the single score of the indexed datapoint
+     */
+    @Override
+    public TopLabels top(IndexedFeatureVector dataPoint, int k) {
+
+        return TopLabels.select(labels, new double[]{dataPoint.dot(indexedWeightsVector)}, k);
+    }
+
+    /****************************************************************
+     * @return the ids of the features which have manual weights
+     */
+    @Override
+    public FeatureDictionary features() {
+
+        return features;
     }
 }
 
@@ -80,6 +126,7 @@ public class ShortAnswerExtractor {
     private final SemanticParser semanticParser;
     private final Scorer classifier;
     private final QCFeaturizationPipeline classificationFeaturizer;
+    private final CascadedQuestionClassifier cascade;
     private final Scorer extractingScorer;
     private final AnswerExtractionFeaturizer extractingFeaturizer;
 
@@ -94,9 +141,28 @@ public class ShortAnswerExtractor {
     public ShortAnswerExtractor(SemanticParser semanticParser, Scorer classifier,
                                 QCFeaturizationPipeline classificationFeaturizer) {
 
+        this(semanticParser, classifier, classificationFeaturizer, null);
+    }
+
+    /****************************************************************
+     * @return instance of the extractor which classifies the questions with the @param cascade,
+     *         parsing only the questions the fast classifier is not confident about
+     */
+    public ShortAnswerExtractor(SemanticParser semanticParser, CascadedQuestionClassifier cascade) {
+
+        this(semanticParser, cascade.full, cascade.pipeline, cascade);
+    }
+
+    /****************************************************************
+     * @return instance of the extractor initialized with all the models
+     */
+    private ShortAnswerExtractor(SemanticParser semanticParser, Scorer classifier,
+                                 QCFeaturizationPipeline classificationFeaturizer, CascadedQuestionClassifier cascade) {
+
         this.semanticParser = semanticParser;
         this.classifier = classifier;
         this.classificationFeaturizer = classificationFeaturizer;
+        this.cascade = cascade;
         this.extractingScorer = new ManuallySetExtractingScorer();
         this.extractingFeaturizer = new AnswerExtractionFeaturizer();
     }
@@ -168,26 +234,69 @@ public class ShortAnswerExtractor {
      */
     public String extract(String question, String answer, SearchResult sr) {
 
-        //List<Pair<String, Double>> predicted = classifier.score(classificationFeaturizer.featurize(answer));
+        // each text is annotated once, for the classification, the semantic roles and the extractors
+        return extract(annotateQuestion(question), annotate(answer), sr);
+    }
+
+    /****************************************************************
+     * @return the @param question annotated for the classification and the semantic roles.
+     *         With a cascade, CoreNLP only tags it, as the semantic roles need only the tags,
+     *         and it is parsed only when the cascade takes the full classifier.
+     */
+    private AnnotatedSentence annotateQuestion(String question) {
+
+        return cascade != null ? cascade.annotate(question, semanticParser) : annotate(question);
+    }
+
+    /****************************************************************
+     * @return a single word extracted from the @param answer, as a short answer to the
+     *         @param question, where the answer is decoded from its @param annotation stored
+     *         with the index (see AnnotationCodec) instead of being parsed, so that only
+     *         the question is parsed, or else parsed if it has no annotation
+     */
+    public String extract(String question, String answer, byte[] annotation, SearchResult sr) {
+
+        AnnotatedSentence annotated = annotation == null ? null : AnnotationCodec.decode(answer, annotation);
+        return extract(annotateQuestion(question), annotated == null ? annotate(answer) : annotated, sr);
+    }
+
+    /****************************************************************
+     * @return the @param text annotated by the pipeline of the classifier and the semantic parser
+     */
+    public AnnotatedSentence annotate(String text) {
+
+        return classificationFeaturizer.extractor.annotate(text, semanticParser);
+    }
+
+    /****************************************************************
+     * @return a single word extracted from the already annotated @param answer,
+     *         as a short answer to the annotated @param question
+     */
+    public String extract(AnnotatedSentence question, AnnotatedSentence answer, SearchResult sr) {
 
         // based on the class and semantic roles for both sentence and question - extract the extract
-        DEPTree questionParsed = semanticParser.parse(question);
-        DEPTree answerParsed = semanticParser.parse(answer);
+        DEPTree questionParsed = question.tree();
+        DEPTree answerParsed = answer.tree();
 
         //DEPNode questionNode = findQuestionWord(questionParsed);
         DEPNode verbNode = findVerb(questionParsed);
 
-        // get a coremap of the answer
-        SemanticGraph depParse = classificationFeaturizer.extractor.parse(answer);
-
-        SparseFeatureVector features = classificationFeaturizer.featurize(question);
-        String questionCategory = features == null ? YESNO : classifier.score(features).get(0).first;
+        String questionCategory;
+        if (cascade != null) {
+            String predicted = cascade.classify(question);
+            questionCategory = predicted == null ? YESNO : predicted;
+        }
+        else {
+            TopLabels top = CascadedQuestionClassifier.top(classificationFeaturizer, classifier,
+                    classificationFeaturizer.extractor.extractQuestionFociWordsWithType(question), 1);
+            questionCategory = top == null ? YESNO : top.name(0);
+        }
 
         System.out.println(questionCategory);
 
         DEPNode genericResult = genericExtract(questionParsed, answerParsed, questionCategory, verbNode);
 
-        String decisionResult = extractWithDecisionTree(question, depParse, answerParsed, questionParsed,
+        String decisionResult = extractWithDecisionTree(question.text(), answer, answerParsed, questionParsed,
                 genericResult, questionCategory, verbNode, sr);
 
         System.out.println("extract(): generic result " + genericResult);
@@ -212,13 +321,13 @@ public class ShortAnswerExtractor {
     /****************************************************************
      * @return The short answer according to the decision tree rules
      */
-    private String extractWithDecisionTree(String question, SemanticGraph answerGraph, DEPTree answerParsed,
+    private String extractWithDecisionTree(String question, AnnotatedSentence answer, DEPTree answerParsed,
                                            DEPTree questionParsed, DEPNode genericResult, String questionCategory,
                                            DEPNode verbNode, SearchResult sr) {
 
         List<IndexedWord> result = null;
 
-        System.out.println("extractWithDecisionTree(): " + answerGraph);
+        System.out.println("extractWithDecisionTree(): " + answer.graph());
         System.out.println("category: " + questionCategory);
         HashSet<String> synsetSet = new HashSet<>();
         String topCat = ""; // top level UIUC category
@@ -236,9 +345,9 @@ public class ShortAnswerExtractor {
         }
         // ENTITY
         if (isCategoryOf(questionCategory, ENTITY)) {
-            result = new RelationExtractor(APPOS).extract(answerGraph);
+            result = new RelationExtractor(APPOS).extract(answer);
             if (result == null && isCategoryOf(questionCategory, ENTITY, _creative)) {
-                result = new FirstCapSeqExtractor().extract(answerGraph);
+                result = new FirstCapSeqExtractor().extract(answer);
             }
             if (synsetSet != null) {
                 System.out.println("extractWithDecisionTree(): WN match: with word: ");
@@ -250,13 +359,13 @@ public class ShortAnswerExtractor {
         // DESCRIPTION
         if (isCategoryOf(questionCategory, DESCRIPTION)) {
             if (isCategoryOf(questionCategory, DESCRIPTION, _description) || isCategoryOf(questionCategory, DESCRIPTION, _definition)) {
-                result = new RelationExtractor(APPOS).extract(answerGraph);
+                result = new RelationExtractor(APPOS).extract(answer);
                 if (result == null) {
                     if (genericResult != null) {
                         return genericResult.getWordForm();
                     }
                     else {
-                        result = new RelationExtractor("xcomp").extract(answerGraph);
+                        result = new RelationExtractor("xcomp").extract(answer);
                     }
                 }
             }
@@ -265,7 +374,7 @@ public class ShortAnswerExtractor {
         // HUMAN
         if (isCategoryOf(questionCategory, HUMAN)) {
             if (isCategoryOf(questionCategory, _description)) {
-                result = new HumDescExtractor().extract(answerGraph);
+                result = new HumDescExtractor().extract(answer);
             }
             else {
                 if (genericResult != null && genericResult.getNamedEntityTag().toLowerCase().equals("person")) {
@@ -279,7 +388,7 @@ public class ShortAnswerExtractor {
                 }
                 //System.out.println("ShortAnswerExtractor.extractWithDecisionTree(): " + answerGraph);
                 //System.out.println("ShortAnswerExtractor.extractWithDecisionTree(): " + question);
-                List<IndexedWord> words = new HumanGenericExtractor().extract(answerGraph);
+                List<IndexedWord> words = new HumanGenericExtractor().extract(answer);
                 if (words != null)
                     words = words.stream().filter(w ->
                         !question.contains(w.word())).collect(Collectors.toList());
@@ -295,7 +404,7 @@ public class ShortAnswerExtractor {
 
         // LOCATION
         if (isCategoryOf(questionCategory, LOCATION)) {
-            result = new LocationExtractor(answerParsed,questionParsed).extract(answerGraph);
+            result = new LocationExtractor(answerParsed,questionParsed).extract(answer);
             if (synsetSet != null) {
                 System.out.println("extractWithDecisionTree(): WN match: with word: ");
                 System.out.println(listOfIndexedWordToString(result) + " and top synsets: " + synsetSet + " : ");
@@ -306,21 +415,21 @@ public class ShortAnswerExtractor {
         // NUMERIC
         if (isCategoryOf(questionCategory, NUMERIC)) {
             if (isCategoryOf(questionCategory, NUMERIC, _count)) {
-                result = new NumCountExtractor().extract(answerGraph);
+                result = new NumCountExtractor().extract(answer);
             }
             if (isCategoryOf(questionCategory, NUMERIC, _date) ||
                     isCategoryOf(questionCategory, NUMERIC, _period)) {
                 if (verbNode != null)
-                    result = new NumDateExtractor(answerParsed, classificationFeaturizer.wordVecFeaturizer, verbNode).extract(answerGraph);
+                    result = new NumDateExtractor(answerParsed, classificationFeaturizer.wordVecFeaturizer, verbNode).extract(answer);
             }
             if (result == null) {
-                result = new GenericNumExtractor().extract(answerGraph);
+                result = new GenericNumExtractor().extract(answer);
             }
         }
 
         // YES/NO
         if (isCategoryOf(questionCategory, YESNO)) {
-            result = new YesNoExtractor().extract(answerGraph);
+            result = new YesNoExtractor().extract(answer);
         }
         if (result != null) {
             result.sort(Comparator.comparingInt(IndexedWord::index));
@@ -341,12 +450,13 @@ public class ShortAnswerExtractor {
         if (answerParsed == null || answerParsed.getSRLTree(matchedNode) == null)
             return null;
         // featurize all the candidates
-        List<Pair<SRLArc, SparseFeatureVector>> featurizedCandidates = answerParsed.getSRLTree(matchedNode).getArgumentArcList().stream().map(a ->
-                new Pair<>(a, extractingFeaturizer.featurize(a, getSemanticArcs(verbNode, questionParsed), questionCategory))).
+        List<Pair<SRLArc, IndexedFeatureVector>> featurizedCandidates = answerParsed.getSRLTree(matchedNode).getArgumentArcList().stream().map(a ->
+                new Pair<>(a, extractingFeaturizer.featurize(a, getSemanticArcs(verbNode, questionParsed), questionCategory,
+                        extractingScorer.features()))).
                 collect(Collectors.toList());
 
         // score all the candidates with a scorer
-        List<Pair<SRLArc, Double>> best = featurizedCandidates.stream().map(c -> new Pair<>(c.first, extractingScorer.score(c.second).get(0).second)).
+        List<Pair<SRLArc, Double>> best = featurizedCandidates.stream().map(c -> new Pair<>(c.first, extractingScorer.top(c.second, 1).score(0))).
                 sorted(Comparator.comparingDouble(d -> -d.second)).collect(Collectors.toList());
 
         if (best.size() == 0 || (best.size() > 1 && best.get(0).second == best.get(1).second))
@@ -15,6 +15,7 @@ import edu.emory.clir.clearnlp.dependency.DEPTree;
 import edu.emory.clir.clearnlp.util.arc.SRLArc;
 import edu.stanford.nlp.ling.IndexedWord;
 import edu.stanford.nlp.semgraph.SemanticGraph;
+import nlp.qa.AnnotatedSentence;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -33,12 +34,22 @@ public abstract class AnswerExtractor {
      */
     public abstract List<IndexedWord> extract(SemanticGraph answerGraph);
 
+    /****************************************************************
+     * @return A list of indexed words which are the short answer
+     *         based on the annotations of the @param answer
+     */
+    public List<IndexedWord> extract(AnnotatedSentence answer) {
+
+        return extract(answer.graph());
+    }
+
     /****************************************************************
      * @return a list of nodes which represent the sentence from the graph
      */
     List<IndexedWord> sentenceWords(SemanticGraph graph) {
 
-        Collection<IndexedWord> nodes = graph.getRoots();
+        // the roots of the graph itself are not changed, as the graph may be shared
+        Collection<IndexedWord> nodes = new ArrayList<>(graph.getRoots());
         List<IndexedWord> decendants = nodes.stream().map(r ->
                 graph.descendants(r)).flatMap(x -> x.stream()).collect(Collectors.toList());
         nodes.addAll(decendants);
@@ -16,7 +16,6 @@ import edu.emory.clir.clearnlp.util.arc.SRLArc;
 import edu.stanford.nlp.ling.IndexedWord;
 import edu.stanford.nlp.semgraph.SemanticGraph;
 import edu.stanford.nlp.util.Pair;
-import nlp.features.SparseFeatureVector;
 import nlp.features.WordVecFeaturizer;
 
 import java.util.Arrays;
@@ -37,13 +36,13 @@ public class NumDateExtractor extends AnswerExtractor {
     private final WordVecFeaturizer featurizer;
 
     // the closest verb to the question
-    private final SparseFeatureVector verbNodeWV;
+    private final String verbWord;
 
     public NumDateExtractor(DEPTree depTree, WordVecFeaturizer featurizer, DEPNode verbNode) {
 
         this.depTree = depTree;
         this.featurizer = featurizer;
-        this.verbNodeWV = featurizer.featurize(verbNode.getWordForm());
+        this.verbWord = verbNode.getWordForm();
     }
 
     /****************************************************************
@@ -66,8 +65,8 @@ public class NumDateExtractor extends AnswerExtractor {
                 return dates;
             }
             else {
-                Optional<Pair<DEPNode, Double>> first = Arrays.stream(depTree.toNodeArray()).map(n -> new Pair<>(n, featurizer.featurize(n.getWordForm()).
-                        similarity(verbNodeWV))).sorted(Comparator.comparingDouble(s -> s.second)).findFirst();
+                Optional<Pair<DEPNode, Double>> first = Arrays.stream(depTree.toNodeArray()).map(n -> new Pair<>(n, featurizer.
+                        similarity(n.getWordForm(), verbWord))).sorted(Comparator.comparingDouble(s -> s.second)).findFirst();
 
                 if (first.isPresent()) {
                     Optional<SRLArc> tmp1 = first.get().first.getSemanticHeadArcList().stream().filter(a -> a.getLabel().toLowerCase().contains("tmp")).findFirst();
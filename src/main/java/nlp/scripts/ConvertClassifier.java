@@ -0,0 +1,37 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.scripts;
+
+import nlp.learning.WeightMatrix;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * A script which converts a serialized question classifier (e.g. question-classifier.pa770.ser)
+ * into the binary memory mapped model format
+ */
+public class ConvertClassifier {
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+
+        String serializedPath = args[0];
+        String binaryPath = args[1];
+
+        WeightMatrix.load(Paths.get(serializedPath)).save(Paths.get(binaryPath));
+
+        WeightMatrix classifier = WeightMatrix.load(Paths.get(binaryPath));
+        System.out.println(String.format("Converted a classifier of %d labels over %s, from %d to %d bytes",
+                classifier.labels().size(), classifier.features(),
+                Files.size(Paths.get(serializedPath)), Files.size(Paths.get(binaryPath))));
+    }
+}
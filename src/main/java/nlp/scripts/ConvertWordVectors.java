@@ -0,0 +1,33 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.scripts;
+
+import nlp.features.WordVectors;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * A script which converts GloVe text word vectors into the binary memory mapped format
+ */
+public class ConvertWordVectors {
+
+    public static void main(String[] args) throws IOException {
+
+        String textPath = args[0];
+        String binaryPath = args[1];
+
+        WordVectors.convert(Paths.get(textPath), Paths.get(binaryPath));
+
+        WordVectors vectors = WordVectors.load(Paths.get(binaryPath));
+        System.out.println(String.format("Converted %d vectors of size %d", vectors.size(), vectors.dimension()));
+    }
+}
@@ -16,7 +16,8 @@ import com.articulate.sigma.StringUtil;
 import com.articulate.nlp.lucene.LuceneIR;
 import com.articulate.nlp.lucene.SearchResult;
 import nlp.features.QCFeaturizationPipeline;
-import nlp.learning.PassiveAggressiveClassifier;
+import nlp.learning.WeightMatrix;
+import nlp.qa.AnnotationCodec;
 import nlp.qa.ShortAnswerExtractor;
 import nlp.semantics.SemanticParser;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
@@ -32,6 +33,7 @@ import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.File;
 import java.io.FileReader;
@@ -129,6 +131,26 @@ public class Demo {
      */
     public static String fetchAnswerSentence(String question, IndexReader reader) throws IOException {
 
+        Document document = fetchAnswerDocument(question, reader);
+        return document == null ? null : document.get(LuceneIR.SENTENCE_CONTENT_FIELD);
+    }
+
+    /****************************************************************
+     * @return the stored annotations of the sentence of the @param document, or null
+     *         if it was indexed without them
+     */
+    public static byte[] annotation(Document document) {
+
+        BytesRef annotation = document == null ? null : document.getBinaryValue(AnnotationCodec.ANNOTATION_FIELD);
+        return annotation == null ? null : BytesRef.deepCopyOf(annotation).bytes;
+    }
+
+    /****************************************************************
+     * fetches the document of the answer candidate, with the sentence and its stored
+     * annotations if it was indexed with them
+     */
+    public static Document fetchAnswerDocument(String question, IndexReader reader) throws IOException {
+
         IndexSearcher searcher = new IndexSearcher(reader);
         searcher.setSimilarity(new BM25Similarity(1, 1));
 
@@ -142,7 +164,7 @@ public class Demo {
 
         // find a document, then find sentences from the document
         if (docs != null && docs.scoreDocs != null && docs.scoreDocs.length > 0)
-            return searcher.doc(docs.scoreDocs[0].doc).get(LuceneIR.SENTENCE_CONTENT_FIELD);
+            return searcher.doc(docs.scoreDocs[0].doc);
         else
             return null;
     }
@@ -175,15 +197,16 @@ public class Demo {
             Directory dir = FSDirectory.open(Paths.get(indexDir));
             IndexReader reader = DirectoryReader.open(dir);
 
-            PassiveAggressiveClassifier classifier = PassiveAggressiveClassifier.load(Paths.get(modelsPath, classifierModel));
+            WeightMatrix classifier = WeightMatrix.load(Paths.get(modelsPath, classifierModel));
             QCFeaturizationPipeline featurizer = new QCFeaturizationPipeline(modelsPath);
             ShortAnswerExtractor extractor = new ShortAnswerExtractor(new SemanticParser(), classifier, featurizer);
 
             System.out.println("**************************************************");
             System.out.println("Question: " + question);
-            String sentence = fetchAnswerSentence(question, reader);
+            Document document = fetchAnswerDocument(question, reader);
+            String sentence = document == null ? null : document.get(LuceneIR.SENTENCE_CONTENT_FIELD);
             SearchResult sr = new SearchResult();
-            String answer = extractor.extract(question, sentence,sr);
+            String answer = extractor.extract(question, sentence, annotation(document), sr);
             System.out.println("Sentence: " + sentence);
             System.out.println("Answer: " + answer);
         }
@@ -211,7 +234,7 @@ public class Demo {
             Directory dir = FSDirectory.open(Paths.get(indexDir));
             IndexReader reader = DirectoryReader.open(dir);
 
-            PassiveAggressiveClassifier classifier = PassiveAggressiveClassifier.load(Paths.get(modelsPath, classifierModel));
+            WeightMatrix classifier = WeightMatrix.load(Paths.get(modelsPath, classifierModel));
             QCFeaturizationPipeline featurizer = new QCFeaturizationPipeline(modelsPath);
             ShortAnswerExtractor extractor = new ShortAnswerExtractor(new SemanticParser(), classifier, featurizer);
 
@@ -225,12 +248,14 @@ public class Demo {
                 currentQuestion = question;
                 System.out.println("**************************************************");
                 System.out.println("Question: " + question);
-                String sentence = fetchAnswerSentence(question, reader);
+                Document document = fetchAnswerDocument(question, reader);
+                String sentence = document == null ? null : document.get(LuceneIR.SENTENCE_CONTENT_FIELD);
                 SearchResult sr = new SearchResult();
-                String answer = extractor.extract(question, sentence,sr);
+                String answer = extractor.extract(question, sentence, annotation(document), sr);
                 System.out.println("Sentence: " + sentence);
                 System.out.println("Answer: " + answer);
             }
+            System.out.println("Feature cache: " + featurizer.cache);
         }
         catch (Exception ex) {
             System.out.println("Failed on a question: " + currentQuestion);
@@ -248,7 +273,7 @@ public class Demo {
             Directory dir = FSDirectory.open(Paths.get(indexDir));
             IndexReader reader = DirectoryReader.open(dir);
 
-            PassiveAggressiveClassifier classifier = PassiveAggressiveClassifier.load(Paths.get(modelsPath, classifierModel));
+            WeightMatrix classifier = WeightMatrix.load(Paths.get(modelsPath, classifierModel));
             QCFeaturizationPipeline featurizer = new QCFeaturizationPipeline(modelsPath);
             ShortAnswerExtractor extractor = new ShortAnswerExtractor(new SemanticParser(), classifier, featurizer);
             Scanner scanner = new Scanner(System.in);
@@ -261,9 +286,10 @@ public class Demo {
                 else {
                     System.out.println("**************************************************");
                     System.out.println("Question: " + input);
-                    String sentence = fetchAnswerSentence(input, reader);
+                    Document document = fetchAnswerDocument(input, reader);
+                    String sentence = document == null ? null : document.get(LuceneIR.SENTENCE_CONTENT_FIELD);
                     SearchResult sr = new SearchResult();
-                    String answer = extractor.extract(input, sentence, sr);
+                    String answer = extractor.extract(input, sentence, annotation(document), sr);
                     System.out.println("Sentence: " + sentence);
                     System.out.println("Answer: " + answer);
                 }
@@ -13,6 +13,8 @@ package nlp.scripts;
 
 import com.articulate.nlp.lucene.LuceneIR;
 import com.articulate.sigma.StringUtil;
+import nlp.qa.QuestionFociExtractor;
+import nlp.semantics.SemanticParser;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
@@ -107,6 +109,18 @@ public class IndexDocuments {
      */
     public static void indexLines(String inputDir, String indexDir) throws IOException {
 
+        indexLines(inputDir, indexDir, false);
+    }
+
+    /****************************************************************
+     * indexes the lines as sentences, with their annotations stored if @param annotate,
+     * see IndexSentences.annotate
+     */
+    public static void indexLines(String inputDir, String indexDir, boolean annotate) throws IOException {
+
+        QuestionFociExtractor extractor = annotate ? new QuestionFociExtractor() : null;
+        SemanticParser parser = annotate ? new SemanticParser() : null;
+
         EnglishAnalyzer analyzer = new EnglishAnalyzer();
         IndexWriterConfig config = new IndexWriterConfig(analyzer);
 
@@ -119,7 +133,7 @@ public class IndexDocuments {
                     try {
                         // index only non empty lines with content which is other than all spaces
                         if (line.length() > 0 && line.chars().filter(i -> (char) i != ' ').count() > 0)
-                            writer.addDocument(toDocument(line));
+                            writer.addDocument(IndexSentences.annotate(toDocument(line), line, extractor, parser));
                     }
                     catch (Exception e) {
                         e.printStackTrace();
@@ -10,9 +10,13 @@
 
 package nlp.scripts;
 
+import nlp.qa.AnnotationCodec;
+import nlp.qa.QuestionFociExtractor;
+import nlp.semantics.SemanticParser;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -24,7 +28,8 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 
 /**
- * This class indexed sentences in lucene
+ * This class indexed sentences in lucene, optionally with their annotations (see AnnotationCodec),
+ * so that the candidate answers are parsed once here rather than for each question
  */
 public class IndexSentences {
 
@@ -33,6 +38,17 @@ public class IndexSentences {
      */
     public static void indexDocs(String inputDir, String indexDir) throws IOException {
 
+        indexDocs(inputDir, indexDir, false);
+    }
+
+    /****************************************************************
+     * indexes the sentences, with their annotations stored if @param annotate
+     */
+    public static void indexDocs(String inputDir, String indexDir, boolean annotate) throws IOException {
+
+        QuestionFociExtractor extractor = annotate ? new QuestionFociExtractor() : null;
+        SemanticParser parser = annotate ? new SemanticParser() : null;
+
         EnglishAnalyzer analyzer = new EnglishAnalyzer();
         IndexWriterConfig config = new IndexWriterConfig(analyzer);
 
@@ -45,7 +61,7 @@ public class IndexSentences {
                     try {
                         // index only non empty lines with content which is other than all spaces
                         if (line.length() > 0 && line.chars().filter(i -> (char) i != ' ').count() > 0)
-                            writer.addDocument(toDocument(line));
+                            writer.addDocument(annotate(toDocument(line), line, extractor, parser));
                     }
                     catch (Exception e) {
                         e.printStackTrace();
@@ -71,6 +87,27 @@ public class IndexSentences {
         return document;
     }
 
+    /****************************************************************
+     * Stores in the @param document the annotations of the @param line by the @param extractor
+     * and the @param parser, unless they are null; a line which fails to be annotated is
+     * indexed without them, and parsed at query time
+     * @return the document
+     */
+    static Document annotate(Document document, String line, QuestionFociExtractor extractor, SemanticParser parser) {
+
+        if (extractor == null || parser == null)
+            return document;
+        try {
+            byte[] annotation = AnnotationCodec.encode(extractor.annotate(line, parser));
+            document.add(new StoredField(AnnotationCodec.ANNOTATION_FIELD, annotation));
+        }
+        catch (Exception e) {
+            System.out.println("Cannot annotate: " + line);
+            e.printStackTrace();
+        }
+        return document;
+    }
+
     /****************************************************************
      * runs the indexing of all the sentences which represents the candidates for the answers
      */
@@ -78,6 +115,7 @@ public class IndexSentences {
 
         String corpusDir = args[0];
         String indexDir = args[1];
-        indexDocs(corpusDir, indexDir);
+        boolean annotate = args.length > 2 && args[2].equals("annotate");
+        indexDocs(corpusDir, indexDir, annotate);
     }
 }
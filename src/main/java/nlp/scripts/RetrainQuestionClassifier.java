@@ -0,0 +1,109 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.scripts;
+
+import edu.stanford.nlp.util.Pair;
+import nlp.data.CsrDataSet;
+import nlp.data.Labels;
+import nlp.data.QCDataReader;
+import nlp.features.FeatureDictionary;
+import nlp.learning.PassiveAggressiveClassifier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * A script which continues the training of an existing questions classifier on new labeled questions
+ * (warm start), instead of training a new one from scratch on all of them. The new questions may have
+ * new labels, which are added to the labels of the classifier.
+ *
+ * The training runs over the new questions only, or mixed with a sample of the original training
+ * questions (replay), so that the classifier does not drift away from them. The retrained classifier
+ * is compared to the existing one on the dev set of the original training, and written only when
+ * its accuracy did not drop more than a tolerance.
+ */
+public class RetrainQuestionClassifier {
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+
+        double C = Double.parseDouble(args[0]);
+
+        String modelsPath = args[1];
+        String classifierFileName = args[2];
+
+        // the new questions, in files of the format of the original ones
+        Path newDataPath = Paths.get(args[3]);
+        String questionsDataPath = args[4];
+
+        // the part of the original training questions replayed with the new ones (0 for the new ones only)
+        double replay = args.length > 5 ? Double.parseDouble(args[5]) : 0.0;
+        int epochs = args.length > 6 ? Integer.parseInt(args[6]) : 10;
+
+        // the drop of the dev accuracy above which the retrained classifier is not written
+        double tolerance = args.length > 7 ? Double.parseDouble(args[7]) : 0.01;
+
+        int threads = args.length > 8 ? Integer.parseInt(args[8]) : 1;
+        Random random = new Random(args.length > 9 ? Long.parseLong(args[9]) : 0);
+
+        // the features of the new questions are added to the ones of the model
+        PassiveAggressiveClassifier model = PassiveAggressiveClassifier.load(Paths.get(modelsPath, classifierFileName));
+        FeatureDictionary features = model.features().unfreeze();
+        // the labels are extended on a copy, the model still scores its own
+        Labels labels = model.labels().copy();
+        int knownLabels = labels.size();
+
+        // both are featurized once into the cache, as by the training
+        Path cacheDir = Paths.get(questionsDataPath, "featurized");
+        QCDataReader reader = new QCDataReader(Paths.get(questionsDataPath, "train"), Paths.get(questionsDataPath, "test"),
+                false, modelsPath, features, "ISO-8859-1", cacheDir, threads);
+        QCDataReader newReader = new QCDataReader(null, newDataPath, false, modelsPath, features, "ISO-8859-1", cacheDir, threads);
+
+        // the labels of both readers mapped to the ones of the model, extended with the new labels
+        CsrDataSet data = CsrDataSet.of(reader.getTrain(), features).relabel(labels, labels.extend(reader.getLabels()));
+        CsrDataSet added = CsrDataSet.of(newReader.getTest(), features).relabel(labels, labels.extend(newReader.getLabels()));
+        System.out.println(String.format("%d new questions, %d labels of which %d new", added.size(), labels.size(),
+                labels.size() - knownLabels));
+
+        // the same dev set as held out by the training
+        Pair<CsrDataSet, CsrDataSet> sets = data.split(0.9);
+        double baseline = model.test(sets.second);
+
+        CsrDataSet train = added;
+        if (replay > 0.0) {
+            CsrDataSet sample = sets.first.shuffle(random).subset(0, (int) (sets.first.size() * replay));
+            train = CsrDataSet.concat(added, sample);
+        }
+        System.out.println(String.format("training on %d questions for %d epochs", train.size(), epochs));
+
+        PassiveAggressiveClassifier pa = model.warmStart(C, labels);
+        long start = System.nanoTime();
+        for (int i = 0; i < epochs; i++) {
+            double loss = pa.train(train.shuffle(random), threads, random);
+            System.out.println(String.format("Current loss over %d data points: %f", train.size(), loss));
+        }
+        System.out.println(String.format("Retraining time: %.1f s", (System.nanoTime() - start) / 1e9));
+
+        PassiveAggressiveClassifier averaged = pa.averaged();
+        double accuracy = averaged.test(sets.second);
+        System.out.println(String.format("new questions accuracy: %f, before: %f", averaged.test(added), model.test(added)));
+        System.out.println(String.format("dev accuracy: %f, before: %f", accuracy, baseline));
+
+        if (accuracy < baseline - tolerance) {
+            System.out.println(String.format("The dev accuracy dropped by more than %f, the classifier is not written", tolerance));
+            return;
+        }
+        PassiveAggressiveClassifier trimmed = averaged.trimmed();
+        trimmed.save(Paths.get(modelsPath, "question-classifier.warm.pa.ser"));
+        trimmed.compact().save(Paths.get(modelsPath, "question-classifier.warm.pa.bin"));
+    }
+}
@@ -13,13 +13,17 @@ package nlp.scripts;
 import edu.stanford.nlp.util.Pair;
 import nlp.data.DataSet;
 import nlp.data.QCDataReader;
-import nlp.features.QCFeaturizationPipeline;
-import nlp.features.SparseFeatureVector;
+import nlp.features.IndexedFeatureVector;
+import nlp.learning.HierarchicalClassifier;
 import nlp.learning.PassiveAggressiveClassifier;
+import nlp.learning.QuantizedWeightMatrix;
+import nlp.learning.Scorer;
+import nlp.learning.TopLabels;
+import nlp.learning.WeightMatrix;
+import nlp.qa.CascadedQuestionClassifier;
 
 import java.io.IOException;
 import java.nio.file.Paths;
-import java.util.List;
 
 /**
  * A script which runs an existing questions classifier on a test set
@@ -34,19 +38,132 @@ public class TestQuestionClassifier {
         String questionsDataPath = args[2];
         boolean gross = args[3].equals("gross");
 
-        QCFeaturizationPipeline pipeline = new QCFeaturizationPipeline(modelsPath);
+        // optionally compact the classifier into a feature major weight matrix,
+        // or also quantize it and compare the two, or load a coarse to fine classifier,
+        // or run it in a cascade after a fast classifier
+        String mode = args.length > 4 ? args[4] : "";
+        boolean compact = mode.equals("compact") || mode.equals("quantized") || mode.equals("cascade");
+        boolean hierarchical = mode.equals("hierarchical");
 
-        QCDataReader reader = new QCDataReader(Paths.get(questionsDataPath, "train"),
-                Paths.get(questionsDataPath, "test"), gross, pipeline, "ISO-8859-1");
+        // the cascade also needs the fast classifier and its threshold
+        if (mode.equals("cascade") && args.length < 7) {
+            System.err.println("usage: TestQuestionClassifier [models-path] [classifier-file] [questions-data-path] " +
+                    "[type=gross/fine] cascade [fast-classifier-file] [threshold]");
+            return;
+        }
+
+        Scorer classifier = compact ? WeightMatrix.load(Paths.get(modelsPath, classifierFileName)) :
+                hierarchical ? HierarchicalClassifier.load(Paths.get(modelsPath, classifierFileName)) :
+                PassiveAggressiveClassifier.load(Paths.get(modelsPath, classifierFileName));
+
+        // only the test set, featurized once into the cache
+        QCDataReader reader = new QCDataReader(null, Paths.get(questionsDataPath, "test"), gross, modelsPath,
+                classifier.features(), "ISO-8859-1", Paths.get(questionsDataPath, "featurized"),
+                Runtime.getRuntime().availableProcessors());
+
+        System.out.println("features: " + classifier.features());
+        test(classifier, reader.getTest(), gross);
+
+        if (mode.equals("quantized")) {
+            WeightMatrix matrix = (WeightMatrix) classifier;
+            QuantizedWeightMatrix quantized = matrix.quantize();
+            System.out.println(String.format("weights size: %d bytes, quantized: %d bytes",
+                    matrix.weightsSize(), quantized.weightsSize()));
+
+            System.out.println("quantized:");
+            test(quantized, reader.getTest(), gross);
+        }
+
+        if (mode.equals("cascade"))
+            cascade(classifier, reader.getTest(), gross, args[5], Double.parseDouble(args[6]), modelsPath, questionsDataPath);
+
+        // compared to a flat classifier, whose features may have other ids
+        if (hierarchical && args.length > 5) {
+            Scorer flat = PassiveAggressiveClassifier.load(Paths.get(modelsPath, args[5]));
+            QCDataReader flatReader = new QCDataReader(null, Paths.get(questionsDataPath, "test"), gross, modelsPath,
+                    flat.features(), "ISO-8859-1", Paths.get(questionsDataPath, "featurized"),
+                    Runtime.getRuntime().availableProcessors());
+
+            System.out.println("flat:");
+            test(flat, flatReader.getTest(), gross);
+        }
+    }
+
+    /****************************************************************
+     * Reports the fraction of the questions which take the fast path of a cascade of the fast
+     * classifier in @param fastClassifierFileName and the full @param classifier, with the
+     * @param threshold, and the accuracy of the cascade compared to the full classifier
+     */
+    private static void cascade(Scorer classifier, DataSet test, boolean gross, String fastClassifierFileName,
+                                double threshold, String modelsPath, String questionsDataPath)
+            throws IOException, ClassNotFoundException {
+
+        WeightMatrix fast = WeightMatrix.load(Paths.get(modelsPath, fastClassifierFileName));
+        QCDataReader fastReader = new QCDataReader(null, Paths.get(questionsDataPath, "test"), gross, modelsPath, true,
+                fast.features(), "ISO-8859-1", Paths.get(questionsDataPath, "featurized"),
+                Runtime.getRuntime().availableProcessors());
+        DataSet fastTest = fastReader.getTest();
 
-        PassiveAggressiveClassifier pa = PassiveAggressiveClassifier.load(Paths.get(modelsPath, classifierFileName));
+        System.out.println("fast:");
+        test(fast, fastTest, gross);
+
+        // the questions are in the same order in both test sets
+        double fullScore = 0.0;
+        double cascadeScore = 0.0;
+        int fastPath = 0;
+        for (int i = 0; i < test.size(); i++) {
+            String gold = label(test.rawDataPoints.get(i).first, gross);
+            String full = predict(classifier, test.indexedDataPoints.get(i).second, gross);
+            fullScore += full.equals(gold) ? 1.0 : 0.0;
+
+            IndexedFeatureVector fastFeatures = fastTest.indexedDataPoints.get(i).second;
+            TopLabels top = fastFeatures == null ? null : fast.top(fastFeatures, 2);
+            String predicted = full;
+            if (top != null && CascadedQuestionClassifier.confident(top, threshold)) {
+                predicted = label(top.name(0), gross);
+                fastPath++;
+            }
+            cascadeScore += predicted.equals(gold) ? 1.0 : 0.0;
+        }
+
+        System.out.println(String.format("cascade with threshold %g: fast path for %.1f%% of the questions", threshold,
+                100.0 * fastPath / test.size()));
+        System.out.println(String.format("accuracy: %f, full: %f, delta: %+f", cascadeScore / test.size(),
+                fullScore / test.size(), (cascadeScore - fullScore) / test.size()));
+    }
+
+    /****************************************************************
+     * @return The best label of the @param classifier, the gross one if @param gross
+     */
+    private static String predict(Scorer classifier, IndexedFeatureVector features, boolean gross) {
+
+        return label(classifier.top(features, 1).name(0), gross);
+    }
+
+    /****************************************************************
+     * @return The @param label, or its gross part if @param gross
+     */
+    private static String label(String label, boolean gross) {
+
+        return gross ? label.split(":")[0] : label;
+    }
+
+    /****************************************************************
+     * Reports the accuracy of the @param classifier on the test set and how long the scoring took
+     */
+    private static void test(Scorer classifier, DataSet test, boolean gross) {
 
         double score = 0.0;
-        for (Pair<Integer, SparseFeatureVector> d : reader.getTest().dataPoints) {
+        long scoringTime = 0;
+        for (int i = 0; i < test.size(); i++) {
+            Pair<Integer, IndexedFeatureVector> d = test.indexedDataPoints.get(i);
+
+            long start = System.nanoTime();
+            TopLabels prediction = classifier.top(d.second, 1);
+            scoringTime += System.nanoTime() - start;
 
-            List<Pair<String, Double>> scorePair = pa.score(d.second);
-            String predicted = scorePair.get(0).first;
-            String gold = reader.getLabels().label(d.first);
+            String predicted = prediction.name(0);
+            String gold = test.rawDataPoints.get(i).first;
 
             if (gross) {
                 predicted = predicted.split(":")[0];
@@ -56,6 +173,7 @@ public class TestQuestionClassifier {
             score += predicted.equals(gold) ? 1.0 : 0.0;
         }
 
-        System.out.println("accuracy: " + score / reader.getTest().dataPoints.size());
+        System.out.println(String.format("scoring time per question: %.1f us", scoringTime / 1000.0 / test.size()));
+        System.out.println("accuracy: " + score / test.size());
     }
 }
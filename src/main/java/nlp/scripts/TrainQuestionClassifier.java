@@ -12,19 +12,32 @@ package nlp.scripts;
 
 
 import edu.stanford.nlp.util.Pair;
-import nlp.data.DataSet;
+import nlp.data.CsrDataSet;
 import nlp.data.QCDataReader;
-import nlp.features.QCFeaturizationPipeline;
+import nlp.features.FeatureDictionary;
+import nlp.features.HashingFeatureDictionary;
+import nlp.features.IndexedFeatureVector;
+import nlp.learning.HierarchicalClassifier;
 import nlp.learning.PassiveAggressiveClassifier;
+import nlp.learning.Scorer;
+import nlp.learning.WeightMatrix;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 /**
  * A script that trains the questions classifier
  */
 public class TrainQuestionClassifier {
 
+    // the most dev accuracy the pruned model may lose to replace the best one
+    private static final double PRUNE_TOLERANCE = 0.005;
+
     public static void main(String[] args) throws IOException {
 
         double C = Double.parseDouble(args[0]);
@@ -32,27 +45,188 @@ public class TrainQuestionClassifier {
         String modelsPath = args[1];
         String questionsDataPath = args[2];
 
-        QCFeaturizationPipeline pipeline = new QCFeaturizationPipeline(modelsPath);
+        // optionally hash the features into a fixed number of buckets instead of naming them (0 bits to keep the names)
+        int bits = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        FeatureDictionary features = bits > 0 ? new HashingFeatureDictionary(bits) : new FeatureDictionary();
+
+        // optionally parse the questions and train on several threads (by iterative parameter mixing,
+        // reproducible for a given seed)
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        Random random = new Random(args.length > 5 ? Long.parseLong(args[5]) : 0);
+
+        // stop when the dev accuracy did not improve in that many evaluations (every 10 iters)
+        int patience = args.length > 6 ? Integer.parseInt(args[6]) : 5;
+        if (patience < 1)
+            throw new RuntimeException("The patience must be at least 1 evaluation, not " + patience);
+
+        // optionally train only on the features seen in at least that many training questions,
+        // and prune the weights of the best model below that magnitude
+        int minFrequency = args.length > 7 ? Integer.parseInt(args[7]) : 1;
+        double pruneThreshold = args.length > 8 ? Double.parseDouble(args[8]) : 0.0;
+
+        // optionally also train a coarse to fine classifier, which follows the second best coarse label
+        // below that margin, and compare it to the flat one
+        double margin = args.length > 9 ? Double.parseDouble(args[9]) : -1.0;
 
-        QCDataReader reader = new QCDataReader(Paths.get(questionsDataPath, "train"),
-                Paths.get(questionsDataPath, "test"), false, pipeline, "ISO-8859-1");
+        // optionally train the fast classifier of a cascade, over the features of the fast pipeline
+        // which does not parse the questions
+        boolean fast = args.length > 10 && args[10].equals("fast");
+        String modelName = fast ? "question-classifier.fast" : "question-classifier";
 
-        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(C, reader.getLabels(), false);
+        // the questions are featurized once into the cache, and read from there by the next runs
+        QCDataReader reader = new QCDataReader(Paths.get(questionsDataPath, "train"), Paths.get(questionsDataPath, "test"),
+                false, modelsPath, fast, features, "ISO-8859-1", Paths.get(questionsDataPath, "featurized"), threads);
 
-        Pair<DataSet, DataSet> sets = reader.getTrain().split(0.9);
+        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(C, reader.getLabels(), features, false);
+
+        // the training runs over the data points in the compressed layout, split without copying
+        CsrDataSet data = CsrDataSet.of(reader.getTrain(), features);
+        System.out.println(String.format("training data: %d data points in %d bytes", data.size(), data.memorySize()));
+        Pair<CsrDataSet, CsrDataSet> sets = data.split(0.9);
+
+        // the rare features are counted on the training part only
+        CsrDataSet selected = sets.first.select(minFrequency);
+        System.out.println(String.format("features seen at least %d times: %d out of %d", minFrequency,
+                selected.distinctFeatures(), sets.first.distinctFeatures()));
+        sets = new Pair<>(selected, sets.second);
 
         int iter = 1000;
-        for (int i = 0; i < iter; i++) {
-            double currentLoss = pa.train(sets.first);
-            System.out.println(String.format("Current loss over %d data points: %f", sets.first.dataPoints.size(), currentLoss));
+        int i = 0;
+        long trainingTime = 0;
+        double bestAccuracy = -1.0;
+        PassiveAggressiveClassifier best = null;
+        int bestIter = 0;
+        int sinceBest = 0;
+        for (; i < iter && sinceBest < patience; i++) {
+            long start = System.nanoTime();
+            double currentLoss = pa.train(sets.first, threads, random);
+            trainingTime += System.nanoTime() - start;
+            System.out.println(String.format("Current loss over %d data points: %f", sets.first.size(), currentLoss));
+
+            // the training set is separated, no more updates will happen
+            boolean converged = currentLoss == 0.0;
+
+            if (i % 10 == 0 || converged) {
+                // the checkpoints hold the averaged weights, and only the best one is kept
+                PassiveAggressiveClassifier averaged = pa.averaged();
+                double accuracy = averaged.test(sets.second);
+                System.out.println(String.format("intermediate perf for %d iters, accuracy: %f", i, accuracy));
+
+                if (accuracy > bestAccuracy) {
+                    bestAccuracy = accuracy;
+                    best = averaged;
+                    bestIter = i;
+                    sinceBest = 0;
+                    save(averaged, modelsPath, modelName);
+                }
+                else {
+                    sinceBest++;
+                }
+            }
+
+            if (converged) {
+                i++;
+                break;
+            }
+        }
+
+        System.out.println(String.format("Ended training after %d iters, best accuracy: %f after %d iters", i, bestAccuracy, bestIter));
+        System.out.println(String.format("Training time on %d threads: %.1f s", threads, trainingTime / 1e9));
+
+        report("best model", best, sets.second);
+        reportFiles(modelsPath, modelName);
+        if (pruneThreshold > 0.0) {
+            PassiveAggressiveClassifier pruned = best.pruned(pruneThreshold);
+            double accuracy = report(String.format("pruned below %g", pruneThreshold), pruned, sets.second);
+            if (accuracy >= bestAccuracy - PRUNE_TOLERANCE) {
+                save(pruned, modelsPath, modelName);
+                reportFiles(modelsPath, modelName);
+            }
+            else {
+                System.out.println(String.format("the pruned model loses more than %g accuracy, the best model is kept",
+                        PRUNE_TOLERANCE));
+            }
+        }
+
+        if (margin >= 0.0) {
+            // as many iterations as the best flat model had
+            HierarchicalClassifier hierarchical = new HierarchicalClassifier(C, reader.getLabels(), features, margin);
+            long start = System.nanoTime();
+            for (int j = 0; j <= bestIter; j++) {
+                hierarchical.train(sets.first, threads, random);
+            }
+            HierarchicalClassifier averaged = hierarchical.averaged();
+            System.out.println(String.format("Hierarchical training time for %d iters: %.1f s", bestIter + 1,
+                    (System.nanoTime() - start) / 1e9));
+
+            evaluate("flat", best, sets.second);
+            evaluate(String.format("hierarchical with margin %g", margin), averaged, sets.second);
+            averaged.save(Paths.get(modelsPath, modelName + ".hierarchical.ser"));
+        }
+    }
+
+    /****************************************************************
+     * Saves the @param model over only the features it has weights for (see
+     * PassiveAggressiveClassifier.trimmed), as modelName.pa.ser and as a weight
+     * matrix in modelName.pa.bin
+     */
+    private static void save(PassiveAggressiveClassifier model, String modelsPath, String modelName) throws IOException {
+
+        PassiveAggressiveClassifier trimmed = model.trimmed();
+        trimmed.save(Paths.get(modelsPath, modelName + ".pa.ser"));
+        trimmed.compact().save(Paths.get(modelsPath, modelName + ".pa.bin"));
+    }
+
+    /****************************************************************
+     * Prints the sizes of the files of the model saved as modelName, which also hold
+     * the names of the features, unlike the size of the weights
+     */
+    private static void reportFiles(String modelsPath, String modelName) throws IOException {
+
+        Path ser = Paths.get(modelsPath, modelName + ".pa.ser");
+        Path bin = Paths.get(modelsPath, modelName + ".pa.bin");
+        System.out.println(String.format("saved model: %d bytes in %s, %d bytes in %s",
+                Files.size(ser), ser.getFileName(), Files.size(bin), bin.getFileName()));
+    }
+
+    /****************************************************************
+     * Prints the size of the @param model, its accuracy and its scoring time over the @param dev set
+     * @return the accuracy
+     */
+    private static double report(String name, PassiveAggressiveClassifier model, CsrDataSet dev) {
+
+        WeightMatrix matrix = model.compact();
+        System.out.println(String.format("%s: %d weights, %d features, %d bytes of weights",
+                name, model.size(), matrix.rows(), matrix.weightsSize()));
+        return evaluate(name, matrix, dev);
+    }
+
+    /****************************************************************
+     * Prints the accuracy of the @param scorer and its scoring time over the @param dev set
+     * @return the accuracy
+     */
+    private static double evaluate(String name, Scorer scorer, CsrDataSet dev) {
+
+        List<IndexedFeatureVector> vectors = new ArrayList<>();
+        for (int i = 0; i < dev.size(); i++) {
+            vectors.add(dev.vector(i));
+        }
 
-            if (i % 10 == 0) {
-                System.out.println(String.format("intermediate perf for %d iters, accuracy: %f", i, pa.test(sets.second)));
-                pa.save(Paths.get(modelsPath, String.format("question-classifier.pa%d.ser", i)));
+        // a first pass to warm up, then the timed one
+        int correct = 0;
+        long time = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            correct = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < vectors.size(); i++) {
+                if (scorer.top(vectors.get(i), 1).label(0) == dev.label(i))
+                    correct++;
             }
+            time = System.nanoTime() - start;
         }
 
-        System.out.println(String.format("Ended training after %d iters, accuracy: %f", iter, pa.test(sets.second)));
-        pa.save(Paths.get(modelsPath, "question-classifier.pa.ser"));
+        System.out.println(String.format("%s: accuracy: %f, %.2f us per question",
+                name, (double) correct / dev.size(), time / 1e3 / dev.size()));
+        return (double) correct / dev.size();
     }
 }
@@ -0,0 +1,141 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.scripts;
+
+import edu.stanford.nlp.util.Pair;
+import nlp.data.CsrDataSet;
+import nlp.data.QCDataReader;
+import nlp.features.FeatureDictionary;
+import nlp.features.HashingFeatureDictionary;
+import nlp.learning.PassiveAggressiveClassifier;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A script which tunes the C parameter and the number of iterations of the questions classifier
+ * by k-fold cross validation on the training set, and trains the best configuration on all of it.
+ *
+ * The training set is featurized once (from the cache) into a compressed dataset, which all the runs
+ * share read only through their own views. Each C and fold is a run on its own thread, which is
+ * evaluated after each of the iteration budgets, as the training for a larger budget goes through
+ * the smaller ones.
+ *
+ * Each epoch goes over the training data shuffled (the same way for the same fold, whatever the C), as
+ * TrainQuestionClassifier does on several threads. Unlike there, the runs neither stop early, as the
+ * number of iterations is what is tuned, nor mix parameters over threads, as the runs already take
+ * all the threads. The best configuration is trained the same way, and written next to the model of
+ * TrainQuestionClassifier rather than over it.
+ */
+public class TuneQuestionClassifier {
+
+    public static void main(String[] args) throws IOException {
+
+        String modelsPath = args[0];
+        String questionsDataPath = args[1];
+
+        // the grid, as comma separated values, the iteration budgets sorted and each evaluated once
+        double[] Cs = Arrays.stream((args.length > 2 ? args[2] : "0.1,0.01,0.001,0.0001").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+        int[] iterations = Arrays.stream((args.length > 3 ? args[3] : "10,50,100,200").split(","))
+                .mapToInt(Integer::parseInt).distinct().sorted().toArray();
+        if (iterations[0] < 1)
+            throw new RuntimeException("An iteration budget must be at least 1, not " + iterations[0]);
+
+        int k = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+        int bits = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+        int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 7 ? Long.parseLong(args[7]) : 0;
+
+        FeatureDictionary features = bits > 0 ? new HashingFeatureDictionary(bits) : new FeatureDictionary();
+        QCDataReader reader = new QCDataReader(Paths.get(questionsDataPath, "train"), Paths.get(questionsDataPath, "test"),
+                false, modelsPath, features, "ISO-8859-1", Paths.get(questionsDataPath, "featurized"), threads);
+        CsrDataSet data = CsrDataSet.of(reader.getTrain(), features);
+        CsrDataSet test = CsrDataSet.of(reader.getTest(), features);
+        System.out.println(String.format("%d-fold cross validation of %d C values and %d iteration budgets over %d data points",
+                k, Cs.length, iterations.length, data.size()));
+
+        // the accuracy of each C, iteration budget and fold
+        double[][][] accuracies = new double[Cs.length][iterations.length][k];
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int c = 0; c < Cs.length; c++) {
+                for (int f = 0; f < k; f++) {
+                    final int config = c;
+                    final int fold = f;
+                    runs.add(executor.submit(() -> {
+                        Pair<CsrDataSet, CsrDataSet> sets = data.fold(k, fold);
+                        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(Cs[config], reader.getLabels(), features, false);
+                        Random random = new Random(seed + fold);
+                        for (int i = 0, budget = 0; budget < iterations.length; i++) {
+                            pa.train(sets.first.shuffle(random));
+                            if (i + 1 >= iterations[budget])
+                                accuracies[config][budget++][fold] = pa.averaged().test(sets.second);
+                        }
+                    }));
+                }
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        }
+        catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Cross validation failed", e);
+        }
+        finally {
+            executor.shutdown();
+        }
+        System.out.println(String.format("Cross validation time on %d threads: %.1f s", threads, (System.nanoTime() - start) / 1e9));
+
+        // the table of the mean and the standard deviation of the accuracies over the folds
+        System.out.println(String.format("%10s %10s %10s %10s", "C", "iters", "accuracy", "std"));
+        int bestC = 0;
+        int bestIterations = 0;
+        double bestAccuracy = -1.0;
+        for (int c = 0; c < Cs.length; c++) {
+            for (int b = 0; b < iterations.length; b++) {
+                double mean = Arrays.stream(accuracies[c][b]).average().orElse(0.0);
+                double variance = Arrays.stream(accuracies[c][b]).map(a -> (a - mean) * (a - mean)).average().orElse(0.0);
+                System.out.println(String.format("%10g %10d %10f %10f", Cs[c], iterations[b], mean, Math.sqrt(variance)));
+
+                if (mean > bestAccuracy) {
+                    bestAccuracy = mean;
+                    bestC = c;
+                    bestIterations = b;
+                }
+            }
+        }
+        System.out.println(String.format("best: C %g, %d iters, accuracy %f", Cs[bestC], iterations[bestIterations], bestAccuracy));
+
+        // the best configuration trained on all the training set
+        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(Cs[bestC], reader.getLabels(), features, false);
+        Random random = new Random(seed);
+        for (int i = 0; i < iterations[bestIterations]; i++) {
+            pa.train(data.shuffle(random));
+        }
+        PassiveAggressiveClassifier averaged = pa.averaged();
+        System.out.println(String.format("test accuracy of the best configuration: %f", averaged.test(test)));
+
+        PassiveAggressiveClassifier trimmed = averaged.trimmed();
+        trimmed.save(Paths.get(modelsPath, "question-classifier.tuned.pa.ser"));
+        trimmed.compact().save(Paths.get(modelsPath, "question-classifier.tuned.pa.bin"));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.semantics;
+
+import nlp.util.ClockCache;
+
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded cache of the parses of sentences, which can be shared by several parsers (and
+ * threads): a parse is keyed by the identity of the models which made it and by the normalized
+ * text of the sentence (trimmed, with the runs of white space as single spaces).
+ *
+ * The cache is bounded by the total weight of the parses, e.g. their numbers of tokens. Lookups
+ * do not lock. Over the bound, the parses are evicted by the clock of ClockCache, over their
+ * frequencies. So the parses which keep coming back (popular questions, candidate answers for
+ * many questions) stay, while the ones seen once go first.
+ *
+ * The cached parses are shared, so their consumers must only read them.
+ */
+public class ParseCache<V> {
+
+    private static final int MAX_FREQUENCY = 3;
+
+    private final ClockCache<Key, V> parses;
+
+    /****************************************************************
+     * @return An empty cache of parses of at most @param maxWeight total weight, as given
+     *         for each parse by the @param weigher
+     */
+    public ParseCache(long maxWeight, ToIntFunction<V> weigher) {
+
+        this.parses = new ClockCache<>(maxWeight, MAX_FREQUENCY, weigher);
+    }
+
+    /****************************************************************
+     * @return the parse of the @param text by the @param model from the cache, or else
+     *         parsed by the @param parser and cached
+     */
+    public V get(String model, String text, Function<String, V> parser) {
+
+        V value = find(model, text);
+        return value != null ? value : put(model, text, parser.apply(text));
+    }
+
+    /****************************************************************
+     * @return the parse of the @param text by the @param model from the cache, or null
+     *         if it is not cached, e.g. to parse the missing texts of a batch together
+     */
+    public V find(String model, String text) {
+
+        return parses.get(new Key(model, normalize(text)));
+    }
+
+    /****************************************************************
+     * Caches the @param value, the parse of the @param text by the @param model
+     * @return the cached parse, which is the one of a concurrent parse of the same text
+     *         if it was cached first
+     */
+    public V put(String model, String text, V value) {
+
+        return parses.putIfAbsent(new Key(model, normalize(text)), value);
+    }
+
+    /****************************************************************
+     * @return The @param text trimmed, with single spaces between its words
+     */
+    static String normalize(String text) {
+
+        return text.trim().replaceAll("\\s+", " ");
+    }
+
+    /****************************************************************
+     * @return The number of cached parses
+     */
+    public int size() {
+
+        return parses.size();
+    }
+
+    /****************************************************************
+     * @return The total weight of the cached parses
+     */
+    public long weight() {
+
+        return parses.weight();
+    }
+
+    /****************************************************************
+     * @return The number of parses found in the cache
+     */
+    public long hits() {
+
+        return parses.hits();
+    }
+
+    /****************************************************************
+     * @return The number of sentences parsed
+     */
+    public long misses() {
+
+        return parses.misses();
+    }
+
+    /****************************************************************
+     * @return The number of parses evicted
+     */
+    public long evictions() {
+
+        return parses.evictions();
+    }
+
+    /****************************************************************
+     * @return The fraction of the lookups found in the cache
+     */
+    public double hitRate() {
+
+        return parses.hitRate();
+    }
+
+    /****************************************************************
+     * @return The statistics of the cache
+     */
+    @Override
+    public String toString() {
+
+        return String.format("%d parses cached of weight %d (max %d), %d hits, %d misses (%.1f%% hits), %d evictions",
+                size(), weight(), parses.maxWeight(), hits(), misses(), hitRate() * 100.0, evictions());
+    }
+
+    /**
+     * A normalized text parsed by some models
+     */
+    private static class Key {
+
+        private final String model;
+
+        private final String text;
+
+        Key(String model, String text) {
+
+            this.model = model;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return model.equals(other.model) && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return model.hashCode() * 31 + text.hashCode();
+        }
+    }
+}
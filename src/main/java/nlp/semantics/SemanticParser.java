@@ -19,12 +19,17 @@ import edu.emory.clir.clearnlp.component.mode.srl.AbstractSRLabeler;
 import edu.emory.clir.clearnlp.component.mode.srl.SRLConfiguration;
 import edu.emory.clir.clearnlp.component.utils.GlobalLexica;
 import edu.emory.clir.clearnlp.component.utils.NLPUtils;
+import edu.emory.clir.clearnlp.dependency.DEPNode;
 import edu.emory.clir.clearnlp.dependency.DEPTree;
 import edu.emory.clir.clearnlp.tokenization.AbstractTokenizer;
 import edu.emory.clir.clearnlp.util.lang.TLanguage;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.CoreMap;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * This class implements a simple parser which parses a sentence and returns a clearnlp parse tree
@@ -42,6 +47,10 @@ public class SemanticParser {
     private final static TLanguage language = TLanguage.ENGLISH;
     private final static SRLConfiguration srlConf = new SRLConfiguration(4, 3);
 
+    // the identity of the models in the parse cache, parsing raw texts or CoreNLP tokens
+    private final static String model = String.join(",", "clearnlp", posModelXZ, depModelXZ, srlModelXZ, nerModelXZ);
+    private final static String tokensModel = model + ",corenlp-tokens";
+
     private final AbstractTokenizer tokenizer;
     private final AbstractMPAnalyzer morph;
     private final AbstractPOSTagger pos;
@@ -49,6 +58,9 @@ public class SemanticParser {
     private final AbstractSRLabeler srl;
     private final AbstractNERecognizer ner;
 
+    // the cache of the parses, if any
+    private ParseCache<DEPTree> cache;
+
     /****************************************************************
      * instance of the parser wrapping needed clearnlp models
      */
@@ -69,11 +81,39 @@ public class SemanticParser {
         this.ner = NLPUtils.getNERecognizer(language, nerModelXZ);
     }
 
+    /****************************************************************
+     * @return a cache of parses of at most @param maxTokens tokens in total, which
+     *         can be shared by several parsers
+     */
+    public static ParseCache<DEPTree> cache(long maxTokens) {
+
+        return new ParseCache<>(maxTokens, DEPTree::size);
+    }
+
+    /****************************************************************
+     * Caches the parses in the @param cache from now on, which are then shared, so that
+     * their consumers must not change them
+     * @return this parser
+     */
+    public SemanticParser cached(ParseCache<DEPTree> cache) {
+
+        this.cache = cache;
+        return this;
+    }
+
     /****************************************************************
      * @return a parse with pos, dep, srl and other labels
      */
     public DEPTree parse(String sentence) {
 
+        return cache == null ? parseText(sentence) : cache.get(model, sentence, this::parseText);
+    }
+
+    /****************************************************************
+     * @return a parse of the @param sentence, not cached
+     */
+    private DEPTree parseText(String sentence) {
+
         DEPTree tree = new DEPTree(this.tokenizer.tokenize(sentence));
         pos.process(tree);
         morph.process(tree);
@@ -82,4 +122,34 @@ public class SemanticParser {
         ner.process(tree);
         return tree;
     }
+
+    /****************************************************************
+     * @return a parse with dep, srl and ner labels of the sentence already tokenized, tagged and
+     *         lemmatized by CoreNLP, whose tokens, POS tags and lemmas are taken instead of
+     *         running the tokenizer, the tagger and the morphological analyzer again
+     */
+    public DEPTree parse(CoreMap sentence) {
+
+        if (cache == null)
+            return parseTokens(sentence);
+        return cache.get(tokensModel, sentence.get(CoreAnnotations.TextAnnotation.class), text -> parseTokens(sentence));
+    }
+
+    /****************************************************************
+     * @return a parse of the tokens of the @param sentence, not cached
+     */
+    private DEPTree parseTokens(CoreMap sentence) {
+
+        List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+        DEPTree tree = new DEPTree(tokens.stream().map(CoreLabel::originalText).collect(Collectors.toList()));
+        for (int i = 0; i < tokens.size(); i++) {
+            DEPNode node = tree.get(i + 1);
+            node.setPOSTag(tokens.get(i).tag());
+            node.setLemma(tokens.get(i).lemma().toLowerCase());
+        }
+        dep.process(tree);
+        srl.process(tree);
+        ner.process(tree);
+        return tree;
+    }
 }
@@ -0,0 +1,243 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * A concurrent cache bounded by the total weight of its values, e.g. their number or their sizes.
+ *
+ * Lookups do not lock. Over the bound, the values are evicted by a clock over their frequencies:
+ * each hit raises the frequency of a value, up to a cap, and each pass of the hand of the clock
+ * lowers it, and the values which dropped to zero are evicted. With a cap of 1, this is the
+ * second chance algorithm. The hand goes round the values in the order they were cached, and
+ * each sweep goes on from where the last one stopped, so the values which keep coming back stay
+ * while the ones seen once go first. The numbers of hits, misses and evictions are counted.
+ */
+public class ClockCache<K, V> {
+
+    private final long maxWeight;
+
+    private final int maxFrequency;
+
+    private final ToIntFunction<V> weigher;
+
+    private final ConcurrentHashMap<K, Entry> entries = new ConcurrentHashMap<>();
+
+    // the clock: the hand is at the head, the keys it passes and keeps go back to the tail
+    private final ConcurrentLinkedQueue<K> clock = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    // only one thread sweeps at a time, the others go on
+    private final ReentrantLock sweeping = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /****************************************************************
+     * @return An empty cache of values of at most @param maxWeight total weight, as given
+     *         for each value by the @param weigher (at least 1), whose frequencies are
+     *         capped at @param maxFrequency
+     */
+    public ClockCache(long maxWeight, int maxFrequency, ToIntFunction<V> weigher) {
+
+        if (maxFrequency < 1)
+            throw new IllegalArgumentException("The frequencies should be capped at 1 at least, not " + maxFrequency);
+
+        this.maxWeight = maxWeight;
+        this.maxFrequency = maxFrequency;
+        this.weigher = weigher;
+    }
+
+    /****************************************************************
+     * @return the value of the @param key, or null if it is not cached
+     */
+    public V get(K key) {
+
+        return get(key, v -> true);
+    }
+
+    /****************************************************************
+     * @return the value of the @param key, or null if it is not cached or not @param usable
+     *         anymore (a miss too), e.g. to compute it again and put() it in its place
+     */
+    public V get(K key, Predicate<? super V> usable) {
+
+        Entry entry = entries.get(key);
+        if (entry != null && usable.test(entry.value)) {
+            hits.incrementAndGet();
+            entry.hit();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /****************************************************************
+     * Caches the @param value of the @param key, in place of the cached one if any
+     */
+    public void put(K key, V value) {
+
+        Entry entry = new Entry(value);
+        Entry replaced = entries.put(key, entry);
+
+        // a replaced value is already on the clock
+        if (replaced == null)
+            clock.add(key);
+        if (weight.addAndGet(replaced == null ? entry.weight : entry.weight - replaced.weight) > maxWeight)
+            sweep();
+    }
+
+    /****************************************************************
+     * Caches the @param value of the @param key, unless some value is cached already
+     * @return the cached value, which is the one of a concurrent put of the same key
+     *         if it came first
+     */
+    public V putIfAbsent(K key, V value) {
+
+        Entry entry = new Entry(value);
+        Entry cached = entries.putIfAbsent(key, entry);
+        if (cached != null)
+            return cached.value;
+
+        clock.add(key);
+        if (weight.addAndGet(entry.weight) > maxWeight)
+            sweep();
+        return value;
+    }
+
+    /****************************************************************
+     * Evicts the values whose frequency dropped to zero, until the cache is within its weight
+     */
+    private void sweep() {
+
+        if (!sweeping.tryLock())
+            return;
+        try {
+            while (weight.get() > maxWeight) {
+                K key = clock.poll();
+                if (key == null)
+                    break;
+                Entry entry = entries.get(key);
+                if (entry.frequency.get() > 0) {
+                    entry.frequency.decrementAndGet();
+                    clock.add(key);
+                }
+                else if (entries.remove(key, entry)) {
+                    weight.addAndGet(-entry.weight);
+                    evictions.incrementAndGet();
+                }
+                else {
+                    // replaced meanwhile, so kept
+                    clock.add(key);
+                }
+            }
+        }
+        finally {
+            sweeping.unlock();
+        }
+    }
+
+    /****************************************************************
+     * @return The number of cached values
+     */
+    public int size() {
+
+        return entries.size();
+    }
+
+    /****************************************************************
+     * @return The total weight of the cached values
+     */
+    public long weight() {
+
+        return weight.get();
+    }
+
+    /****************************************************************
+     * @return The most total weight of the cached values
+     */
+    public long maxWeight() {
+
+        return maxWeight;
+    }
+
+    /****************************************************************
+     * @return The number of lookups found in the cache
+     */
+    public long hits() {
+
+        return hits.get();
+    }
+
+    /****************************************************************
+     * @return The number of lookups not found in the cache
+     */
+    public long misses() {
+
+        return misses.get();
+    }
+
+    /****************************************************************
+     * @return The number of values evicted
+     */
+    public long evictions() {
+
+        return evictions.get();
+    }
+
+    /****************************************************************
+     * @return The fraction of the lookups found in the cache
+     */
+    public double hitRate() {
+
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    /**
+     * A cached value with its weight and frequency
+     */
+    private class Entry {
+
+        private final V value;
+
+        private final int weight;
+
+        private final AtomicInteger frequency = new AtomicInteger();
+
+        Entry(V value) {
+
+            this.value = value;
+            this.weight = Math.max(1, weigher.applyAsInt(value));
+        }
+
+        /****************************************************************
+         * Raises the frequency of the value, up to the cap
+         */
+        void hit() {
+
+            int f = frequency.get();
+            if (f < maxFrequency)
+                frequency.compareAndSet(f, f + 1);
+        }
+    }
+}
@@ -1,7 +1,37 @@
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.util.Pair;
+import nlp.data.CsrDataSet;
+import nlp.data.DataSet;
+import nlp.data.FeaturizedDataCache;
+import nlp.data.Labels;
+import nlp.features.FeatureDictionary;
+import nlp.features.HashingFeatureDictionary;
+import nlp.features.IndexedFeatureVector;
+import nlp.features.LexicalizedFeaturizer;
+import nlp.features.NerFeaturizer;
 import nlp.features.SparseFeatureVector;
+import nlp.features.WordVectors;
+import nlp.learning.HierarchicalClassifier;
+import nlp.learning.OnlineClassifier;
+import nlp.learning.PassiveAggressiveClassifier;
+import nlp.learning.QuantizedWeightMatrix;
+import nlp.learning.ScoringSink;
+import nlp.learning.TopLabels;
+import nlp.learning.WeightMatrix;
+import nlp.qa.CascadedQuestionClassifier;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static nlp.features.Fixtures.extractedWords;
+
 public class TestFeatures {
 
     @Test
@@ -46,4 +76,683 @@ public class TestFeatures {
         Assert.assertTrue(v1.getFeatures().containsKey("f4"));
         Assert.assertEquals(4, v1.getFeatures().size());
     }
+
+    @Test
+    public void testIndexedDot() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        IndexedFeatureVector v1 = new IndexedFeatureVector();
+        IndexedFeatureVector v2 = new IndexedFeatureVector();
+
+        v1.add(features.index("f1"));
+        v1.add(features.index("f2"));
+        v1.add(features.index("f3"));
+
+        v2.add(features.index("f1"), 3.0);
+        v2.add(features.index("f3"), -2.0);
+        v2.add(features.index("f4"), 1000.0);
+
+        Assert.assertEquals(1.0, v1.dot(v2), 0.00000001);
+        Assert.assertEquals(1.0, v2.dot(v1), 0.00000001);
+    }
+
+    @Test
+    public void testIndexedMatchesNamed() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        SparseFeatureVector v1 = new SparseFeatureVector();
+        SparseFeatureVector v2 = new SparseFeatureVector();
+
+        for (int i = 0; i < 20; i++) {
+            v1.add("a" + i, (double) i);
+            v2.add("b" + i, (double) -i);
+        }
+        v2.add("a3", 0.5);
+
+        SparseFeatureVector expected = v1.addPrefix("FOCUS").cross(v2);
+        expected.mergeWith(v1.mult(2.0));
+
+        IndexedFeatureVector indexed = v1.toIndexed(features).addPrefix("FOCUS", features).cross(v2.toIndexed(features), features);
+        indexed.mergeWith(v1.toIndexed(features).mult(2.0));
+
+        Assert.assertEquals(expected.getFeatures(), indexed.toSparse(features).getFeatures());
+    }
+
+    @Test
+    public void testFrozenDictionary() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        int f1 = features.index("f1");
+        features.freeze();
+
+        Assert.assertEquals(f1, features.index("f1"));
+        Assert.assertEquals(FeatureDictionary.UNKNOWN, features.index("f2"));
+        Assert.assertEquals(FeatureDictionary.UNKNOWN, features.crossed(f1, f1));
+
+        IndexedFeatureVector v = new IndexedFeatureVector();
+        v.add(features.index("f2"));
+        Assert.assertEquals(0, v.size());
+
+        // the combinations unknown to the frozen dictionary stay so, until it grows again
+        Assert.assertEquals(FeatureDictionary.UNKNOWN, features.prefixed("FOCUS", f1));
+        Assert.assertEquals(FeatureDictionary.UNKNOWN, features.prefixed("FOCUS", f1));
+        Assert.assertEquals(FeatureDictionary.UNKNOWN, features.crossed(f1, f1));
+        features.unfreeze();
+        Assert.assertEquals(1, features.prefixed("FOCUS", f1));
+        Assert.assertEquals(2, features.crossed(f1, f1));
+        Assert.assertEquals("f1_X_f1", features.name(2));
+    }
+
+    @Test
+    public void testIndexedDataSetSplit() {
+
+        // a dataset of indexed data points only, as the featurized data cache gives
+        DataSet dataSet = dataSet(new FeatureDictionary(), 20, 2, 2, 0);
+        Assert.assertEquals(20, dataSet.size());
+
+        Pair<DataSet, DataSet> sets = dataSet.split(0.75);
+        Assert.assertEquals(15, sets.first.size());
+        Assert.assertEquals(5, sets.second.indexedDataPoints.size());
+        Assert.assertTrue(sets.second.rawDataPoints.isEmpty());
+    }
+
+    @Test
+    public void testHashing() {
+
+        HashingFeatureDictionary features = new HashingFeatureDictionary(4);
+        Assert.assertEquals(features.index("LEX_word"), features.index("LEX", "word"));
+
+        IndexedFeatureVector v = new IndexedFeatureVector();
+        for (int i = 0; i < 100; i++) {
+            v.add(features.crossed(features.index("f" + i), features.index("g")));
+        }
+
+        IndexedFeatureVector folded = features.fold(v);
+        Assert.assertTrue(folded.size() <= 16);
+        folded.forEach((k, value) -> Assert.assertTrue(k >= 0 && k < 16));
+
+        // the combined features of a named vector would not be hashed from their parts
+        SparseFeatureVector named = new SparseFeatureVector();
+        named.add("f1_X_g");
+        try {
+            named.toIndexed(features);
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWordVectors() throws IOException {
+
+        Path text = Files.createTempFile("vectors", ".txt");
+        Path binary = Files.createTempFile("vectors", ".bin");
+        Files.write(text, Arrays.asList("the 1.0 0.0 2.5", "cat 0.5 -1.0 0.0", "the 1.0 1.0 1.0"));
+
+        WordVectors.convert(text, binary);
+        WordVectors vectors = WordVectors.load(binary);
+
+        Assert.assertEquals(3, vectors.dimension());
+        Assert.assertEquals(-1, vectors.row("dog"));
+        Assert.assertEquals(-1.0, vectors.get(vectors.row("cat"), 1), 0.0);
+
+        // the last vector of a repeated word is used
+        Assert.assertEquals(1.0, vectors.get(vectors.row("the"), 1), 0.0);
+        Assert.assertEquals(1.0, vectors.similarity(vectors.row("the"), vectors.row("the")), 0.000001);
+
+        Files.delete(text);
+        Files.delete(binary);
+    }
+
+    /****************************************************************
+     * @return An empty data set over the @param features, with labels of its own
+     */
+    private static DataSet dataSet(FeatureDictionary features) {
+
+        DataSet dataSet = new DataSet();
+        dataSet.labels = new Labels();
+        dataSet.features = features;
+        return dataSet;
+    }
+
+    /****************************************************************
+     * @return A data set of @param size points over the @param features, the i-th one
+     *         labeled "L" + i % @param labels, as made by point()
+     */
+    private static DataSet dataSet(FeatureDictionary features, int size, int labels, int f, int g) {
+
+        DataSet dataSet = dataSet(features);
+        for (int i = 0; i < size; i++) {
+            dataSet.indexedDataPoints.add(new Pair<>(dataSet.labels.index("L" + i % labels), point(features, i, f, g)));
+        }
+        return dataSet;
+    }
+
+    /****************************************************************
+     * @return The @param i-th point, of the feature "f" + i % @param f, and of the feature
+     *         "g" + i % @param g of value 0.5 unless g is 0, folded by the @param features
+     */
+    private static IndexedFeatureVector point(FeatureDictionary features, int i, int f, int g) {
+
+        IndexedFeatureVector x = new IndexedFeatureVector();
+        x.add(features.index("f" + i % f));
+        if (g > 0)
+            x.add(features.index("g" + i % g), 0.5);
+        return features.fold(x);
+    }
+
+    @Test
+    public void testWeightMatrix() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        DataSet train = dataSet(features, 30, 3, 3, 5);
+
+        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(0.1, train.labels, features, false);
+        pa.train(CsrDataSet.of(train, features));
+        WeightMatrix matrix = pa.compact();
+
+        for (Pair<Integer, IndexedFeatureVector> d : train.indexedDataPoints) {
+            List<Pair<String, Double>> expected = pa.score(d.second);
+            List<Pair<String, Double>> actual = matrix.score(d.second);
+            Assert.assertEquals(expected.get(0).first, actual.get(0).first);
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(expected.get(i).second, actual.get(i).second, 0.0001);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelTraining() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        DataSet train = dataSet(features, 100, 4, 4, 7);
+
+        PassiveAggressiveClassifier first = new PassiveAggressiveClassifier(0.1, train.labels, features, false);
+        PassiveAggressiveClassifier second = new PassiveAggressiveClassifier(0.1, train.labels, features, false);
+        Random firstRandom = new Random(42);
+        Random secondRandom = new Random(42);
+        CsrDataSet data = CsrDataSet.of(train, features);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(first.train(data, 4, firstRandom), second.train(data, 4, secondRandom), 0.0);
+        }
+
+        // the same seed gives the same model, which separates the labels
+        for (Pair<Integer, IndexedFeatureVector> d : train.indexedDataPoints) {
+            Assert.assertEquals(first.score(d.second), second.score(d.second));
+        }
+        Assert.assertEquals(1.0, first.test(train), 0.0);
+        Assert.assertEquals(1.0, first.averaged().test(train), 0.0);
+    }
+
+    @Test
+    public void testAveraging() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        DataSet train = dataSet(features, 4, 2, 2, 0);
+
+        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(10.0, train.labels, features, false);
+        IndexedFeatureVector f0 = new IndexedFeatureVector();
+        f0.add(features.lookup("f0"));
+
+        // one step of tau 0.5 for the first label, the average of the two weights so far is half of it
+        train.indexedDataPoints = train.indexedDataPoints.subList(0, 1);
+        pa.train(CsrDataSet.of(train, features));
+        Assert.assertEquals(0.5, pa.score(f0).get(0).second, 0.000001);
+        Assert.assertEquals(0.25, pa.averaged().score(f0).get(0).second, 0.000001);
+    }
+
+    @Test
+    public void testSavedWeightMatrix() throws IOException, ClassNotFoundException {
+
+        for (FeatureDictionary features : Arrays.asList(new FeatureDictionary(), new HashingFeatureDictionary(6))) {
+            DataSet train = dataSet(features, 30, 3, 3, 5);
+            train.indexedDataPoints.add(new Pair<>(train.labels.index("once"), point(features, 30, 3, 5)));
+
+            PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(0.1, train.labels, features, false);
+            pa.train(CsrDataSet.of(train, features));
+
+            Path path = Files.createTempFile("classifier", ".bin");
+            pa.compact().save(path);
+            WeightMatrix loaded = WeightMatrix.load(path);
+
+            Assert.assertEquals(train.labels.all(), loaded.labels().all());
+            Assert.assertNull(loaded.labels().label(3));
+            Assert.assertTrue(loaded.features().isFrozen());
+            for (Pair<Integer, IndexedFeatureVector> d : train.indexedDataPoints) {
+                Assert.assertEquals(pa.compact().score(d.second), loaded.score(d.second));
+            }
+
+            // a named vector scores as the same features indexed directly, unless they are hashed
+            SparseFeatureVector named = new SparseFeatureVector();
+            named.add("f1");
+            named.add("g2", 0.5);
+            if (features instanceof HashingFeatureDictionary) {
+                try {
+                    loaded.score(named);
+                    Assert.fail();
+                }
+                catch (IllegalStateException e) {
+                    // expected
+                }
+            }
+            else {
+                Assert.assertEquals(loaded.score(point(features, 7, 3, 5)), loaded.score(named));
+            }
+
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testQuantizedWeightMatrix() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        DataSet train = dataSet(features, 60, 3, 3, 7);
+
+        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(0.1, train.labels, features, false);
+        pa.train(CsrDataSet.of(train, features));
+        WeightMatrix matrix = pa.compact();
+        QuantizedWeightMatrix quantized = matrix.quantize();
+
+        // both share the index of the rows
+        long index = features.size() * Integer.BYTES;
+        Assert.assertTrue((quantized.weightsSize() - index) * 2 < matrix.weightsSize() - index);
+        for (Pair<Integer, IndexedFeatureVector> d : train.indexedDataPoints) {
+            double[] expected = matrix.scores(d.second);
+            double[] actual = quantized.scores(d.second);
+            for (int l = 0; l < expected.length; l++) {
+                Assert.assertEquals(expected[l], actual[l], 0.02 * Math.abs(expected[l]) + 0.01);
+            }
+            Assert.assertEquals(matrix.score(d.second).get(0).first, quantized.score(d.second).get(0).first);
+        }
+    }
+
+    @Test
+    public void testTopLabels() {
+
+        Labels labels = new Labels();
+        double[] scores = {0.5, 2.0, -1.0, 2.0, 0.7};
+        for (int l = 0; l < scores.length; l++) {
+            labels.index("L" + l);
+            labels.index("L" + l);
+        }
+
+        TopLabels top = TopLabels.select(labels, scores, 3);
+        Assert.assertEquals(3, top.size());
+
+        // equal scores keep the order of the labels
+        Assert.assertEquals(1, top.label(0));
+        Assert.assertEquals(3, top.label(1));
+        Assert.assertEquals(4, top.label(2));
+        Assert.assertEquals("L3", top.name(1));
+        Assert.assertEquals(0.7, top.score(2), 0.0);
+
+        Assert.assertEquals(5, TopLabels.select(labels, scores, 10).size());
+    }
+
+    @Test
+    public void testFeaturizedDataCache() throws IOException {
+
+        FeatureDictionary cached = new FeatureDictionary();
+        DataSet dataSet = new DataSet();
+        for (int i = 0; i < 5; i++) {
+            IndexedFeatureVector x = new IndexedFeatureVector();
+            x.add(cached.index("f" + i), 0.5);
+            x.add(cached.index("g"));
+            dataSet.rawDataPoints.add(new Pair<>("L" + i % 2, "question " + i));
+            dataSet.indexedDataPoints.add(new Pair<>(0, i == 4 ? null : x));
+        }
+
+        // a test set, whose own features are not added to the dictionary
+        DataSet test = new DataSet();
+        IndexedFeatureVector y = new IndexedFeatureVector();
+        y.add(cached.index("g"));
+        y.add(cached.index("h"));
+        test.rawDataPoints.add(new Pair<>("L0", "question 5"));
+        test.indexedDataPoints.add(new Pair<>(0, y));
+
+        Path path = Files.createTempFile("featurized", ".qcd");
+        new FeaturizedDataCache(cached, Arrays.asList(dataSet, test)).save(path);
+
+        Labels labels = new Labels();
+        FeatureDictionary features = new FeatureDictionary();
+        features.index("g");
+        List<DataSet> dataSets = FeaturizedDataCache.load(path, labels).dataSets(features, 1);
+        DataSet loaded = dataSets.get(0);
+
+        Assert.assertEquals(5, loaded.size());
+        Assert.assertEquals("question 3", loaded.rawDataPoints.get(3).second);
+        Assert.assertEquals(1, (int) loaded.indexedDataPoints.get(3).first);
+        Assert.assertNull(loaded.indexedDataPoints.get(4).second);
+        Assert.assertEquals(0.5, loaded.indexedDataPoints.get(2).second.value(features.lookup("f2")), 0.0);
+        Assert.assertEquals(1.0, loaded.indexedDataPoints.get(2).second.value(features.lookup("g")), 0.0);
+        Assert.assertEquals("L1", labels.label(1));
+
+        Assert.assertEquals(FeatureDictionary.UNKNOWN, features.lookup("h"));
+        Assert.assertEquals(5, features.size());
+        Assert.assertEquals(1, dataSets.get(1).indexedDataPoints.get(0).second.size());
+
+        Files.delete(path);
+    }
+
+    @Test
+    public void testCsrDataSet() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        DataSet dataSet = dataSet(features);
+        for (int i = 0; i < 20; i++) {
+            IndexedFeatureVector x = new IndexedFeatureVector();
+            x.add(features.index("f" + i), 0.5);
+            x.add(features.index("g" + i % 3));
+            dataSet.rawDataPoints.add(new Pair<>("L" + i, "question " + i));
+            dataSet.indexedDataPoints.add(new Pair<>(dataSet.labels.index("L" + i), x));
+        }
+
+        CsrDataSet csr = CsrDataSet.of(dataSet, features);
+        Assert.assertEquals(20, csr.size());
+        Assert.assertEquals(0.5, csr.vector(7).value(features.lookup("f7")), 0.0);
+        Assert.assertEquals(2, csr.end(7) - csr.start(7));
+
+        // the same split as of the dataset, without copying the data points
+        Pair<CsrDataSet, CsrDataSet> csrSets = csr.split(0.75);
+        Pair<DataSet, DataSet> sets = dataSet.split(0.75);
+        Assert.assertEquals(15, csrSets.first.size());
+        Assert.assertEquals(5, csrSets.second.size());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals((int) sets.second.indexedDataPoints.get(i).first, csrSets.second.label(i));
+        }
+
+        // the folds are disjoint and each one is tested once
+        int[] tested = new int[20];
+        for (int f = 0; f < 3; f++) {
+            Pair<CsrDataSet, CsrDataSet> fold = csr.fold(3, f);
+            Assert.assertEquals(20, fold.first.size() + fold.second.size());
+            for (int i = 0; i < fold.second.size(); i++) {
+                tested[fold.second.label(i)]++;
+            }
+        }
+        for (int count : tested) {
+            Assert.assertEquals(1, count);
+        }
+
+        // a model over another dictionary does not train on the ids of this one
+        try {
+            new PassiveAggressiveClassifier(0.1, dataSet.labels, new FeatureDictionary(), false).train(csr);
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPruning() throws IOException, ClassNotFoundException {
+
+        FeatureDictionary features = new FeatureDictionary();
+        DataSet dataSet = dataSet(features);
+        for (int i = 0; i < 30; i++) {
+            IndexedFeatureVector x = new IndexedFeatureVector();
+            x.add(features.index("f" + i), 0.5);
+            x.add(features.index("g" + i % 3));
+            dataSet.indexedDataPoints.add(new Pair<>(dataSet.labels.index("L" + i % 3), x));
+        }
+
+        // the features seen once are not selected, the ids do not change
+        CsrDataSet data = CsrDataSet.of(dataSet, features);
+        Assert.assertEquals(33, data.distinctFeatures());
+        CsrDataSet selected = data.select(2);
+        Assert.assertEquals(3, selected.distinctFeatures());
+        Assert.assertEquals(30, selected.size());
+        Assert.assertEquals(1, selected.end(4) - selected.start(4));
+        Assert.assertEquals(features.lookup("g1"), selected.id(selected.start(4)));
+
+        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(0.1, dataSet.labels, features, false);
+        pa.train(data);
+        PassiveAggressiveClassifier pruned = pa.pruned(0.05);
+        Assert.assertTrue(pruned.size() < pa.size());
+        Assert.assertEquals(pa.size(), pa.pruned(0.0).size());
+
+        // the matrix has rows only for the features with weights, also once saved
+        WeightMatrix matrix = pruned.compact();
+        Assert.assertTrue(matrix.rows() < pa.compact().rows());
+        Assert.assertTrue(matrix.weightsSize() < pa.compact().weightsSize());
+
+        Path path = Files.createTempFile("pruned", ".bin");
+        try {
+            matrix.save(path);
+            WeightMatrix loaded = WeightMatrix.load(path);
+            Assert.assertEquals(matrix.rows(), loaded.rows());
+            for (Pair<Integer, IndexedFeatureVector> d : dataSet.indexedDataPoints) {
+                Assert.assertArrayEquals(matrix.scores(d.second), loaded.scores(d.second), 0.0);
+                Assert.assertEquals(pruned.top(d.second, 1).label(0), loaded.top(d.second, 1).label(0));
+            }
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testTrimmedModel() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        features.index("unused");
+        int tagged = features.prefixed("NN", features.index("w"));
+        int bigram = features.crossed(tagged, features.prefixed("VB", features.index("v")));
+        DataSet dataSet = dataSet(features);
+        for (int i = 0; i < 10; i++) {
+            IndexedFeatureVector x = new IndexedFeatureVector();
+            x.add(i % 2 == 0 ? tagged : bigram);
+            dataSet.indexedDataPoints.add(new Pair<>(dataSet.labels.index("L" + i % 2), x));
+        }
+
+        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(0.1, dataSet.labels, features, false);
+        pa.train(CsrDataSet.of(dataSet, features));
+        PassiveAggressiveClassifier trimmed = pa.trimmed();
+        Assert.assertEquals(pa.size(), trimmed.size());
+
+        // the features with weights are kept with their parts, so they can still be built
+        FeatureDictionary retained = trimmed.features();
+        Assert.assertEquals(5, retained.size());
+        Assert.assertEquals(FeatureDictionary.UNKNOWN, retained.lookup("unused"));
+        int retainedBigram = retained.crossed(retained.prefixed("NN", retained.lookup("w")),
+                retained.prefixed("VB", retained.lookup("v")));
+        Assert.assertEquals(retained.lookup("NN_w_X_VB_v"), retainedBigram);
+
+        IndexedFeatureVector x = new IndexedFeatureVector();
+        x.add(bigram);
+        IndexedFeatureVector y = new IndexedFeatureVector();
+        y.add(retainedBigram);
+        Assert.assertArrayEquals(pa.compact().scores(x), trimmed.compact().scores(y), 0.0);
+
+        // the hashed ids are kept as they are
+        FeatureDictionary hashing = new HashingFeatureDictionary(10);
+        Assert.assertSame(hashing, new PassiveAggressiveClassifier(0.1, dataSet.labels, hashing, false).trimmed().features());
+    }
+
+    @Test
+    public void testHierarchicalClassifier() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        DataSet dataSet = dataSet(features);
+        String[] names = {"NUM:date", "NUM:count", "HUM:ind", "ABBR:exp"};
+        for (int i = 0; i < 40; i++) {
+            IndexedFeatureVector x = new IndexedFeatureVector();
+            x.add(features.index("coarse" + names[i % 4].split(":")[0]));
+            x.add(features.index("fine" + names[i % 4]));
+            dataSet.indexedDataPoints.add(new Pair<>(dataSet.labels.index(names[i % 4]), x));
+        }
+        CsrDataSet data = CsrDataSet.of(dataSet, features);
+
+        // only the data points of the mapped labels are left, with their new labels
+        Labels numLabels = new Labels();
+        CsrDataSet num = data.relabel(numLabels, new int[]{0, 1, -1, -1});
+        Assert.assertEquals(20, num.size());
+        Assert.assertEquals(1, num.label(1));
+        Assert.assertSame(numLabels, num.labels);
+
+        HierarchicalClassifier classifier = new HierarchicalClassifier(0.1, dataSet.labels, features, 0.5);
+        for (int i = 0; i < 5; i++) {
+            classifier.train(data, 1, new Random(i));
+        }
+        HierarchicalClassifier averaged = classifier.averaged();
+        Assert.assertEquals(1.0, averaged.test(data), 0.0);
+
+        for (Pair<Integer, IndexedFeatureVector> d : dataSet.indexedDataPoints) {
+            TopLabels top = averaged.top(d.second, 2);
+            Assert.assertEquals((int) d.first, top.label(0));
+            Assert.assertEquals(averaged.score(d.second).get(0).second, top.score(0), 1e-9);
+        }
+        Assert.assertEquals(4, averaged.score(dataSet.indexedDataPoints.get(0).second).size());
+
+        // the named vectors cannot be scored over hashed features
+        SparseFeatureVector named = new SparseFeatureVector();
+        named.add("f1");
+        try {
+            new HierarchicalClassifier(0.1, dataSet.labels, new HashingFeatureDictionary(4), 0.5).score(named);
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCascadeThreshold() {
+
+        Labels labels = new Labels();
+        for (String label : new String[]{"A", "A", "B", "B", "C", "C"}) {
+            labels.index(label);
+        }
+
+        // the fast path is taken when the best label wins by the threshold
+        TopLabels top = TopLabels.select(labels, new double[]{0.5, 2.0, 1.2}, 2);
+        Assert.assertTrue(CascadedQuestionClassifier.confident(top, 0.8));
+        Assert.assertFalse(CascadedQuestionClassifier.confident(top, 1.0));
+        Assert.assertTrue(CascadedQuestionClassifier.confident(TopLabels.select(labels, new double[]{1.0}, 2), 1.0));
+    }
+
+    @Test
+    public void testOnlineClassifier() throws IOException, ClassNotFoundException {
+
+        FeatureDictionary features = new FeatureDictionary();
+        DataSet train = dataSet(features, 20, 2, 2, 0);
+        PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(0.5, train.labels, features, false);
+        pa.train(CsrDataSet.of(train, features));
+
+        // the feedback says that f0 is L1 from now on
+        IndexedFeatureVector x = new IndexedFeatureVector();
+        x.add(features.lookup("f0"));
+        OnlineClassifier online = new OnlineClassifier(pa, 2);
+        WeightMatrix first = online.snapshot();
+        Assert.assertEquals("L0", online.top(x, 1).name(0));
+        Assert.assertFalse(online.update(x, "L2"));
+
+        // nothing is seen before the publication, and the published snapshots do not change
+        Assert.assertTrue(online.update(x, "L1"));
+        Assert.assertSame(first, online.snapshot());
+        Assert.assertEquals(0, online.version());
+        online.update(x, "L1");
+        Assert.assertEquals(1, online.version());
+        Assert.assertNotSame(first, online.snapshot());
+        Assert.assertEquals("L0", first.top(x, 1).name(0));
+        Assert.assertEquals("L0", pa.top(x, 1).name(0));
+        for (int i = 0; i < 10; i++) {
+            online.update(x, "L1");
+        }
+        Assert.assertEquals("L1", online.top(x, 1).name(0));
+
+        Path model = Files.createTempFile("online", ".ser");
+        Path binary = Files.createTempFile("online", ".bin");
+        try {
+            online.update(x, "L1");
+            online.save(model, binary);
+            Assert.assertEquals(7, online.version());
+            Assert.assertEquals(online.top(x, 1).score(0), WeightMatrix.load(binary).top(x, 1).score(0), 0.0);
+            Assert.assertEquals("L1", PassiveAggressiveClassifier.load(model).top(x, 1).name(0));
+        }
+        finally {
+            Files.delete(model);
+            Files.delete(binary);
+        }
+    }
+
+    @Test
+    public void testWarmStart() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        DataSet old = dataSet(features, 20, 2, 2, 0);
+        PassiveAggressiveClassifier model = new PassiveAggressiveClassifier(0.5, old.labels, features, false);
+        model.train(CsrDataSet.of(old, features));
+
+        // the new data has its own labels, a known one and a new one
+        DataSet added = dataSet(features);
+        for (int i = 0; i < 10; i++) {
+            IndexedFeatureVector x = new IndexedFeatureVector();
+            x.add(features.index(i % 2 == 0 ? "f1" : "g"));
+            added.indexedDataPoints.add(new Pair<>(added.labels.index(i % 2 == 0 ? "L1" : "L2"), x));
+        }
+
+        Labels labels = old.labels.copy();
+        int[] map = labels.extend(added.labels);
+        Assert.assertEquals(2, old.labels.size());
+        Assert.assertArrayEquals(new int[]{1, 2}, map);
+        Assert.assertEquals("L2", labels.label(2));
+        CsrDataSet data = CsrDataSet.of(added, features).relabel(labels, map);
+        Assert.assertEquals(2, data.label(1));
+
+        // mixed with a replay of the old data
+        CsrDataSet mixed = CsrDataSet.concat(data, CsrDataSet.of(old, features).subset(0, 4));
+        Assert.assertEquals(14, mixed.size());
+        Assert.assertEquals(0, mixed.label(10));
+        Assert.assertEquals(features.lookup("f0"), mixed.id(mixed.start(10)));
+
+        PassiveAggressiveClassifier warm = model.warmStart(0.5, labels);
+        Assert.assertEquals(model.score(old.indexedDataPoints.get(0).second).get(0).second,
+                warm.score(old.indexedDataPoints.get(0).second).get(0).second, 0.0);
+        for (int i = 0; i < 5; i++) {
+            warm.train(mixed);
+        }
+        Assert.assertEquals(1.0, warm.test(mixed), 0.0);
+        Assert.assertEquals("L0", model.top(old.indexedDataPoints.get(0).second, 1).name(0));
+    }
+
+    @Test
+    public void testEmitFeatures() {
+
+        // the features of the same words are averaged and not summed
+        List<Pair<IndexedWord, String>> extracted = extractedWords();
+
+        for (FeatureDictionary features : new FeatureDictionary[]{new FeatureDictionary(), new HashingFeatureDictionary(8)}) {
+            IndexedFeatureVector featurized = features.fold(new LexicalizedFeaturizer().combine(new NerFeaturizer())
+                    .featurize(new ArrayList<>(extracted), features));
+            IndexedFeatureVector emitted = new IndexedFeatureVector();
+            new LexicalizedFeaturizer().combine(new NerFeaturizer())
+                    .emit(new ArrayList<>(extracted), features, features.folding(emitted::add));
+
+            Assert.assertEquals(featurized.size(), emitted.size());
+            Assert.assertEquals(featurized.dot(featurized), emitted.dot(featurized), 1e-9);
+            Assert.assertEquals(emitted.dot(emitted), emitted.dot(featurized), 1e-9);
+
+            // the streamed scores are the ones of the vector
+            DataSet train = dataSet(features);
+            IndexedFeatureVector other = new IndexedFeatureVector();
+            other.add(features.index("OTHER"));
+            for (int i = 0; i < 2; i++) {
+                train.indexedDataPoints.add(new Pair<>(train.labels.index("A"), featurized));
+                train.indexedDataPoints.add(new Pair<>(train.labels.index("B"), features.fold(other)));
+            }
+            PassiveAggressiveClassifier pa = new PassiveAggressiveClassifier(0.5, train.labels, features, false);
+            pa.train(CsrDataSet.of(train, features));
+
+            WeightMatrix matrix = pa.compact();
+            ScoringSink sink = matrix.sink();
+            emitted.forEach(sink);
+            Assert.assertArrayEquals(matrix.scores(featurized), sink.scores(), 1e-6);
+            Assert.assertEquals(matrix.top(featurized, 1).name(0), sink.top(1).name(0));
+            sink.reset();
+            Assert.assertEquals(0.0, sink.scores()[0], 0.0);
+        }
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.features;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The words the tests of the featurizers extract from questions
+ */
+public class Fixtures {
+
+    /****************************************************************
+     * @return extracted words of a question, the same shapes and lemmas in several of them
+     */
+    public static List<Pair<IndexedWord, String>> extractedWords() {
+
+        String[][] words = {{"London", "london", "LOCATION"}, {"Paris", "paris", "LOCATION"},
+                {"capital", "capital", null}, {"Paris", "paris", "LOCATION"}};
+        List<Pair<IndexedWord, String>> extracted = new ArrayList<>();
+        for (int i = 0; i < words.length; i++) {
+            extracted.add(new Pair<>(word(words[i][0], words[i][1], words[i][2], words.length - i),
+                    i == 2 ? "FOCUS" : "QUANTITY"));
+        }
+        return extracted;
+    }
+
+    /****************************************************************
+     * @return the @param word of the @param lemma and the named entity type @param ner,
+     *         which may be null, at the @param index of its sentence
+     */
+    public static IndexedWord word(String word, String lemma, String ner, int index) {
+
+        CoreLabel label = new CoreLabel();
+        label.setWord(word);
+        label.setLemma(lemma);
+        label.setNER(ner);
+        label.setIndex(index);
+        return new IndexedWord(label);
+    }
+}
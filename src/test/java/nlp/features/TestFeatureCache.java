@@ -0,0 +1,56 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.features;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static nlp.features.Fixtures.extractedWords;
+
+public class TestFeatureCache {
+
+    @Test
+    public void testFeatureCache() {
+
+        FeatureDictionary features = new FeatureDictionary();
+        IndexedFeatureVector featurized = new LexicalizedFeaturizer().combine(new NerFeaturizer())
+                .featurize(extractedWords(), features);
+
+        FeatureCache cache = new FeatureCache(100);
+        WordFeaturizer cached = new LexicalizedFeaturizer().combine(new NerFeaturizer()).cached(cache);
+        IndexedFeatureVector first = cached.featurize(extractedWords(), features);
+        IndexedFeatureVector emitted = new IndexedFeatureVector();
+        cached.emit(extractedWords(), features, emitted::add);
+
+        // three words by the lexicalized featurizer and two entity types, the rest hit the cache
+        Assert.assertEquals(featurized.size(), first.size());
+        Assert.assertEquals(featurized.dot(featurized), first.dot(featurized), 1e-9);
+        Assert.assertEquals(featurized.dot(featurized), emitted.dot(featurized), 1e-9);
+        Assert.assertEquals(5, cache.misses());
+        Assert.assertEquals(11, cache.hits());
+        Assert.assertEquals(5, cache.size());
+
+        // the words unknown to a frozen dictionary are not kept when it learns them
+        FeatureDictionary learning = new FeatureDictionary();
+        learning.freeze();
+        Assert.assertEquals(0, cached.featurize(extractedWords(), learning).size());
+        learning.unfreeze();
+        Assert.assertEquals(featurized.size(), cached.featurize(extractedWords(), learning).size());
+
+        // the used words survive the eviction
+        FeatureCache small = new FeatureCache(2);
+        WordFeaturizer evicting = new LexicalizedFeaturizer().cached(small);
+        evicting.featurize(extractedWords(), features);
+        Assert.assertTrue(small.size() <= 2);
+        Assert.assertTrue(small.evictions() > 0);
+        Assert.assertEquals(small.hits() + small.misses(), 4);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.qa;
+
+import edu.emory.clir.clearnlp.dependency.DEPNode;
+import edu.emory.clir.clearnlp.dependency.DEPTree;
+import edu.stanford.nlp.international.Language;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.trees.UniversalEnglishGrammaticalRelations;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestAnnotationCodec {
+
+    @Test
+    public void testAnnotationCodec() {
+
+        // a sentence annotated by hand, as the parsers would
+        String text = "Paris is the capital of France";
+        String[][] words = {{"Paris", "NNP", "LOCATION"}, {"is", "VBZ", "O"}, {"the", "DT", "O"},
+                {"capital", "NN", "O"}, {"of", "IN", "O"}, {"France", "NNP", "LOCATION"}};
+        List<CoreLabel> tokens = new ArrayList<>();
+        for (int i = 0; i < words.length; i++) {
+            CoreLabel token = new CoreLabel();
+            token.setWord(words[i][0]);
+            token.setValue(words[i][0]);
+            token.setOriginalText(words[i][0]);
+            token.setTag(words[i][1]);
+            token.setLemma(i == 1 ? "be" : words[i][0].toLowerCase());
+            token.setNER(words[i][2]);
+            token.setIndex(i + 1);
+            tokens.add(token);
+        }
+        SemanticGraph graph = new SemanticGraph();
+        List<IndexedWord> vertices = new ArrayList<>();
+        for (CoreLabel token : tokens) {
+            IndexedWord vertex = new IndexedWord(token);
+            vertices.add(vertex);
+            graph.addVertex(vertex);
+        }
+        graph.addRoot(vertices.get(3));
+        String[][] edges = {{"3", "0", "nsubj"}, {"3", "1", "cop"}, {"3", "2", "det"}, {"5", "4", "case"}};
+        for (String[] edge : edges) {
+            graph.addEdge(vertices.get(Integer.parseInt(edge[0])), vertices.get(Integer.parseInt(edge[1])),
+                    GrammaticalRelation.valueOf(Language.UniversalEnglish, edge[2]), 1.0, false);
+        }
+        graph.addEdge(vertices.get(3), vertices.get(5), UniversalEnglishGrammaticalRelations.getNmod("of"), 1.0, false);
+        CoreMap sentence = new ArrayCoreMap();
+        sentence.set(CoreAnnotations.TextAnnotation.class, text);
+        sentence.set(CoreAnnotations.TokensAnnotation.class, tokens);
+        sentence.set(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class, graph);
+
+        DEPTree tree = new DEPTree(Arrays.asList(text.split(" ")));
+        int[] heads = {2, 0, 4, 2, 4, 5};
+        String[] labels = {"nsubj", "root", "det", "attr", "prep", "pobj"};
+        for (int i = 0; i < words.length; i++) {
+            DEPNode node = tree.get(i + 1);
+            node.setPOSTag(words[i][1]);
+            node.setLemma(tokens.get(i).lemma());
+            node.setNamedEntityTag(words[i][2].equals("O") ? null : words[i][2]);
+            node.setHead(tree.get(heads[i]), labels[i]);
+        }
+        DEPNode predicate = tree.get(2);
+        predicate.setRolesetID("be.01");
+        tree.get(1).addSemanticHead(predicate, "A1");
+        tree.get(4).addSemanticHead(predicate, "A2");
+
+        byte[] bytes = AnnotationCodec.encode(new AnnotatedSentence(text, sentence, tree));
+        AnnotatedSentence decoded = AnnotationCodec.decode(text, bytes);
+
+        // the same tokens, dependencies and semantic roles
+        Assert.assertEquals(text, decoded.text());
+        Assert.assertEquals(tokens.size(), decoded.tokens().size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Assert.assertEquals(tokens.get(i).word(), decoded.tokens().get(i).word());
+            Assert.assertEquals(tokens.get(i).tag(), decoded.tokens().get(i).tag());
+            Assert.assertEquals(tokens.get(i).lemma(), decoded.tokens().get(i).lemma());
+            Assert.assertEquals(tokens.get(i).ner(), decoded.tokens().get(i).ner());
+            Assert.assertEquals(tokens.get(i).index(), decoded.tokens().get(i).index());
+        }
+        Assert.assertEquals(graph.toString(), decoded.graph().toString());
+        Assert.assertEquals("capital", decoded.graph().getFirstRoot().word());
+        Assert.assertTrue(decoded.graph().typedDependencies().stream().anyMatch(d ->
+                d.reln().getShortName().equals("nmod") && "of".equals(d.reln().getSpecific())));
+        Assert.assertEquals(tree.toString(), decoded.tree().toString());
+        Assert.assertEquals("be.01", decoded.tree().get(2).getRolesetID());
+        Assert.assertEquals(2, decoded.tree().getSRLTree(decoded.tree().get(2)).getArgumentArcList().size());
+        Assert.assertEquals("LOCATION", decoded.tree().get(6).getNamedEntityTag());
+
+        // a form of another version is not decoded
+        bytes[3]++;
+        Assert.assertNull(AnnotationCodec.decode(text, bytes));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.qa;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.PropertiesUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestCoreNLPPool {
+
+    @Test
+    public void testConcurrentAnnotation() throws Exception {
+
+        // the tokenizer needs no models
+        CoreNLPPool pool = new CoreNLPPool(PropertiesUtils.asProperties("annotators", "tokenize,ssplit",
+                "ssplit.isOneSentence", "true"), 2);
+        Assert.assertEquals(1, pool.created());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> tokens = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String text = String.join(" ", Collections.nCopies(i % 10 + 1, "word"));
+                tokens.add(executor.submit(() -> {
+                    Annotation document = new Annotation(text);
+                    pool.annotate(document);
+                    return document.get(CoreAnnotations.TokensAnnotation.class).size();
+                }));
+            }
+            for (int i = 0; i < tokens.size(); i++) {
+                Assert.assertEquals(i % 10 + 1, tokens.get(i).get().intValue());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        // no more pipelines than the size of the pool
+        Assert.assertTrue(pool.created() <= pool.size());
+
+        // a batch gives each document to the callback once, on one thread as on several
+        for (int threads : new int[]{1, 2}) {
+            List<Annotation> documents = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                documents.add(new Annotation("word " + i));
+            }
+            AtomicInteger callbacks = new AtomicInteger();
+            pool.annotate(documents, threads, d -> callbacks.incrementAndGet());
+            Assert.assertEquals(5, callbacks.get());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.qa;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+import nlp.semantics.ParseCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestQuestionFociExtractor {
+
+    @Test
+    public void testBatchAnnotation() {
+
+        // an extractor which only tokenizes, as it needs no models
+        QuestionFociExtractor extractor = new QuestionFociExtractor("tokenize,ssplit", 2);
+        ParseCache<CoreMap> cache = QuestionFociExtractor.cache(10000);
+        extractor.cached(cache);
+
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            texts.add(String.join(" ", Collections.nCopies(i % 7 + 1, "w" + i)));
+        }
+
+        // the sentences come back in the order of the texts
+        List<String> annotated = new ArrayList<>();
+        extractor.annotateSentences(texts, 4, s -> annotated.add(s.get(CoreAnnotations.TextAnnotation.class)));
+        Assert.assertEquals(texts, annotated);
+        Assert.assertEquals(50, cache.size());
+
+        // the cached ones are not annotated again
+        List<Integer> tokens = new ArrayList<>();
+        extractor.annotateSentences(texts.subList(10, 20), 4, s -> tokens.add(s.get(CoreAnnotations.TokensAnnotation.class).size()));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals((i + 10) % 7 + 1, tokens.get(i).intValue());
+        }
+        Assert.assertEquals(10, cache.hits());
+        Assert.assertEquals(50, cache.misses());
+
+        // on one thread, each sentence is annotated and given to the callback once
+        QuestionFociExtractor single = new QuestionFociExtractor("tokenize,ssplit", 1);
+        List<String> once = new ArrayList<>();
+        single.annotateSentences(texts.subList(0, 5), 1, s -> once.add(s.get(CoreAnnotations.TextAnnotation.class)));
+        Assert.assertEquals(texts.subList(0, 5), once);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.semantics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.function.Function;
+
+public class TestParseCache {
+
+    @Test
+    public void testParseCache() {
+
+        // the parses are the texts upper cased, weighted by their lengths
+        int[] parsed = {0};
+        ParseCache<String> cache = new ParseCache<>(20, String::length);
+        Function<String, String> parser = t -> {
+            parsed[0]++;
+            return t.toUpperCase();
+        };
+
+        Assert.assertEquals("WHO IS HE", cache.get("m", "who is he", parser));
+        Assert.assertEquals("WHO IS HE", cache.get("m", " who  is he\t", parser));
+        Assert.assertEquals(1, parsed[0]);
+        Assert.assertEquals(1, cache.hits());
+
+        // another model parses the same text on its own
+        cache.get("other", "who is he", parser);
+        Assert.assertEquals(2, parsed[0]);
+
+        // the parse which keeps coming back survives the eviction of the others
+        cache.get("m", "who is he", parser);
+        cache.get("m", "where is she", parser);
+        Assert.assertTrue(cache.weight() <= 20);
+        Assert.assertTrue(cache.evictions() > 0);
+        cache.get("m", "who is he", parser);
+        Assert.assertEquals(3, parsed[0]);
+        Assert.assertEquals(3, cache.misses());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *  This code is copyright CloudMinds 2017.
+ *
+ *  Author: Yan Virin jan.virin@gmail.com
+ *
+ *  This software is released under the GNU Public License <http://www.gnu.org/copyleft/gpl.html>.
+ *  Please cite the following article in any publication with references:
+ *  Pease A., and Benzmüller C. (2013). Sigma: An Integrated Development Environment for Logical Theories. AI Communications 26, pp79-97.
+ */
+
+package nlp.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestClockCache {
+
+    @Test
+    public void testClockCache() {
+
+        // the values are weighted by their lengths
+        ClockCache<String, String> cache = new ClockCache<>(10, 1, String::length);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals("aaa", cache.putIfAbsent("a", "aaa"));
+        Assert.assertEquals("aaa", cache.putIfAbsent("a", "other"));
+        Assert.assertEquals("aaa", cache.get("a"));
+
+        // a value which is not usable anymore is a miss, and is replaced in place
+        Assert.assertNull(cache.get("a", v -> v.length() > 3));
+        cache.put("a", "aaaa");
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(4, cache.weight());
+        Assert.assertEquals(1, cache.hits());
+        Assert.assertEquals(2, cache.misses());
+
+        // over the weight, the value used since the hand last passed survives
+        cache.get("a");
+        cache.put("b", "bbbb");
+        cache.put("c", "ccc");
+        Assert.assertEquals(1, cache.evictions());
+        Assert.assertEquals(7, cache.weight());
+        Assert.assertEquals("aaaa", cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testHotKeySurvivesScan() {
+
+        // the hot keys land in all the buckets of the map, and one of them is looked up
+        // every few one-off keys, so that the clock passes the cache a few times
+        for (int maxFrequency : new int[]{1, 3}) {
+            for (int hot = 0; hot < 50; hot++) {
+                ClockCache<String, String> cache = new ClockCache<>(10, maxFrequency, v -> 1);
+                for (int i = 0; i < 500; i++) {
+                    if (i % 4 == 0 && cache.get("hot" + hot) == null)
+                        cache.put("hot" + hot, "HOT");
+                    if (cache.get("key" + i) == null)
+                        cache.put("key" + i, "KEY");
+                    Assert.assertTrue(cache.weight() <= 10);
+                }
+                Assert.assertEquals(124, cache.hits());
+            }
+        }
+    }
+}